@@ -1,70 +1,121 @@
 package client.controller;
 
+import client.gui.models.HeaderStore;
 import client.gui.models.Message;
+import client.network.ListEntryParser;
 import client.network.TCPClient;
 import client.network.UDPListener;
+import client.search.IndexingPipeline;
+import client.search.InvertedIndex;
+import client.search.TrigramIndex;
+import client.storage.MailboxStore;
+import client.utils.Config;
 import client.utils.Logger;
-
-import java.io.BufferedReader;
-import java.io.PrintWriter;
+import client.utils.StringPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public class ClientController {
-    private TCPClient tcpClient;
+    private SessionManager sessionManager;
+    private ConnectionPool connectionPool;
     private UDPListener udpListener;
     private Thread udpThread;
     private String username;
     private Logger logger;
     private NotificationCallback notificationCallback;
+    private final IoExecutor ioExecutor = new IoExecutor(Config.IO_MAX_CONCURRENCY);
+    private final StringPool senderPool = new StringPool();
+    private final MessageCache messageCache = new MessageCache(Config.MESSAGE_CACHE_BYTES);
+    private volatile MailboxStore mailboxStore;
+    private volatile Map<String, FolderSync> folderSyncs = newFolderSyncs();
+    private volatile Boolean listSinceSupported;
+    private volatile MessagePrefetcher prefetcher;
+    private final InvertedIndex searchIndex = new InvertedIndex();
+    private final TrigramIndex substringIndex = new TrigramIndex();
+    private final IndexingPipeline indexingPipeline = new IndexingPipeline(searchIndex, substringIndex, this::folderOf,
+            Config.INDEX_WORKERS, Config.INDEX_QUEUE_CAPACITY, Config.INDEX_QUEUE_BYTES, Config.INDEX_BATCH_SIZE);
 
     public interface NotificationCallback {
         void onNewMail(String username, int count);
     }
 
+    public interface MessageStreamListener {
+        void onHeader(String name, String value);
+        void onBodyStart();
+        void onBodyChunk(String chunk);
+        void onComplete();
+    }
+
     public ClientController() {
         this.logger = new Logger();
+        messageCache.setRemovalListener(this::releasePrefetched);
     }
 
     public void setNotificationCallback(NotificationCallback callback) {
         this.notificationCallback = callback;
     }
 
-    public boolean login(String host, int tcpPort, String username, String password, int udpPort) {
-        try {
-            System.out.println("Connecting to " + host + ":" + tcpPort);
-            tcpClient = new TCPClient(host, tcpPort);
+    public <T> void runAsync(String operation, Callable<T> task, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        noteUserActivity();
+        ioExecutor.submit(operation, task, onSuccess, onError);
+    }
 
-            if (!tcpClient.connect()) {
-                System.out.println("TCP Connection failed");
-                logger.logAuth("CONNECT", "FAILED to " + host + ":" + tcpPort);
-                return false;
-            }
+    public void runAsync(String operation, Runnable task) {
+        noteUserActivity();
+        ioExecutor.execute(operation, task);
+    }
 
-            System.out.println("Step 1: Sending HELO with UDP port " + udpPort);
-            String heloCommand = "HELO " + username + " UDP:" + udpPort;
-            String heloResponse = tcpClient.sendCommand(heloCommand);
-            System.out.println("HELO Response: " + heloResponse);
+    public boolean login(String host, int tcpPort, String username, String password, int udpPort) {
+        try {
+            System.out.println("Connecting to " + host + ":" + tcpPort + " as " + username + " (UDP:" + udpPort + ")");
+            SessionFactory factory = new SessionFactory(host, tcpPort, username, password, udpPort, Config.USE_NIO_TRANSPORT);
 
-            if (heloResponse == null || !heloResponse.startsWith("250")) {
-                System.out.println("HELO failed: " + heloResponse);
-                logger.logAuth("HELO", "FAILED: " + heloResponse);
+            TCPClient tcpClient;
+            try {
+                tcpClient = factory.open();
+            } catch (IOException e) {
+                System.out.println("Login failed: " + e.getMessage());
+                logger.logAuth("LOGIN", "FAILED: " + e.getMessage());
                 return false;
             }
 
-            System.out.println("Step 2: Sending AUTH");
-            String authCommand = "AUTH " + username + " " + password;
-            String authResponse = tcpClient.sendCommand(authCommand);
-            System.out.println("AUTH Response: " + authResponse);
-
-            if (authResponse == null || !authResponse.startsWith("235")) {
-                System.out.println("AUTH failed: " + authResponse);
-                logger.logAuth("AUTH", "FAILED for user: " + username);
-                return false;
-            }
+            this.connectionPool = new ConnectionPool(factory, Config.POOL_SIZE, Config.POOL_IDLE_TIMEOUT,
+                    Config.POOL_VALIDATION_INTERVAL, Config.SOCKET_TIMEOUT);
+            this.sessionManager = new SessionManager(factory, tcpClient, logger,
+                    Config.WARM_STANDBY_ENABLED, Config.HEARTBEAT_INTERVAL, connectionPool::invalidateIdle);
+            sessionManager.start();
 
+            messageCache.clear();
+            folderSyncs = newFolderSyncs();
+            listSinceSupported = null;
             this.username = username;
             logger.setUser(username);
+            openMailboxStore(username);
+            indexingPipeline.clear();
+            ioExecutor.execute("INDEX", this::indexStoredBodies);
+            if (Config.PREFETCH_ENABLED) {
+                prefetcher = new MessagePrefetcher(this::prefetchMessage, Config.PREFETCH_BUDGET_BYTES,
+                        Config.PREFETCH_IDLE_DELAY, this::isConnectionBusy);
+            }
             logger.logAuth("LOGIN", "SUCCESS for user: " + username);
             startUDPListener(udpPort);
 
@@ -109,9 +160,9 @@ public class ClientController {
     }
 
     private void refreshUnreadCount() {
-        if (tcpClient != null && tcpClient.isConnected()) {
+        if (connectionPool != null) {
             try {
-                List<String> responses = tcpClient.sendMultiLineCommand("LIST UNREAD");
+                List<String> responses = pooled(client -> client.sendMultiLineCommand("LIST UNREAD"));
                 if (responses != null && !responses.isEmpty()) {
                     for (String response : responses) {
                         if (response.startsWith("213 ")) {
@@ -126,55 +177,96 @@ public class ClientController {
         }
     }
 
+    private interface BodyTransfer {
+        String send(TCPClient client);
+    }
+
     public void sendMessage(String to, String subject, String body) {
+        deliverMessage(to, subject, utf8Length(body), client -> client.sendData(body));
+    }
+
+    public void sendMessage(String to, String subject, Path bodyFile) {
+        try (FileChannel channel = FileChannel.open(bodyFile, StandardOpenOption.READ)) {
+            long byteLength = channel.size();
+            deliverMessage(to, subject, byteLength, client -> client.sendBody(channel, byteLength));
+        } catch (IOException e) {
+            logger.logError("SEND", e.getMessage());
+            throw new RuntimeException("Send failed: cannot read " + bodyFile + " - " + e.getMessage(), e);
+        }
+    }
+
+    public void sendMessage(String to, String subject, InputStream body) {
+        Path spool = null;
+        try {
+            spool = Files.createTempFile("maillite-send-", ".tmp");
+            Files.copy(body, spool, StandardCopyOption.REPLACE_EXISTING);
+            sendMessage(to, subject, spool);
+        } catch (IOException e) {
+            logger.logError("SEND", e.getMessage());
+            throw new RuntimeException("Send failed: " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(spool);
+        }
+    }
+
+    public void sendMessage(String to, String subject, Reader body) {
+        Path spool = null;
+        try {
+            spool = Files.createTempFile("maillite-send-", ".tmp");
+            try (Writer writer = Files.newBufferedWriter(spool, StandardCharsets.UTF_8)) {
+                body.transferTo(writer);
+            }
+            sendMessage(to, subject, spool);
+        } catch (IOException e) {
+            logger.logError("SEND", e.getMessage());
+            throw new RuntimeException("Send failed: " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(spool);
+        }
+    }
+
+    private void deliverMessage(String to, String subject, long bodyLength, BodyTransfer transfer) {
         try {
-            System.out.println("Attempting to send message...");
+            System.out.println("Attempting to send message (" + bodyLength + " bytes)...");
 
+            TCPClient tcpClient = getTcpClient();
             if (tcpClient == null || !tcpClient.isConnected()) {
                 System.out.println("Connection lost! Attempting to reconnect...");
                 boolean reconnected = attemptReconnect();
                 if (!reconnected) {
                     throw new RuntimeException("Failed to reconnect to server. Please check if server is running.");
                 }
+                tcpClient = getTcpClient();
             }
 
-            BufferedReader reader = tcpClient.getReader();
-            PrintWriter writer = tcpClient.getWriter();
-
-            writer.println("SEND");
-            writer.flush();
-            String response1 = reader.readLine();
-            System.out.println("Response 1: " + response1);
+            synchronized (tcpClient) {
+                String response1 = tcpClient.sendCommand("SEND");
+                System.out.println("Response 1: " + response1);
 
-            if (response1 == null || !response1.startsWith("354")) {
-                throw new Exception("SEND command failed: " + response1);
-            }
-
-            String formattedTo = formatRecipients(to);
-            String headers = "FROM:" + username + " TO:" + formattedTo + " SUBJ:" + subject + " BODYLEN:" + body.length();
+                if (response1 == null || !response1.startsWith("354")) {
+                    throw new Exception("SEND command failed: " + response1);
+                }
 
-            writer.println(headers);
-            writer.flush();
-            String response2 = reader.readLine();
-            System.out.println("Response 2: " + response2);
+                String formattedTo = formatRecipients(to);
+                String headers = "FROM:" + username + " TO:" + formattedTo + " SUBJ:" + subject + " BODYLEN:" + bodyLength;
 
-            if (response2 == null || !response2.startsWith("354")) {
-                throw new Exception("Headers failed: " + response2);
-            }
+                String response2 = tcpClient.sendCommand(headers);
+                System.out.println("Response 2: " + response2);
 
-            writer.print(body);
-            writer.println();
-            writer.flush();
+                if (response2 == null || !response2.startsWith("354")) {
+                    throw new Exception("Headers failed: " + response2);
+                }
 
-            String response3 = reader.readLine();
-            System.out.println("Response 3: " + response3);
+                String response3 = transfer.send(tcpClient);
+                System.out.println("Response 3: " + response3);
 
-            if (response3 != null && response3.startsWith("250")) {
-                String messageId = extractMessageId(response3);
-                System.out.println("Message sent successfully! ID: " + messageId);
-                logger.logSend(messageId, formattedTo, subject);
-            } else {
-                throw new Exception("Message save failed: " + response3);
+                if (response3 != null && response3.startsWith("250")) {
+                    String messageId = extractMessageId(response3);
+                    System.out.println("Message sent successfully! ID: " + messageId);
+                    logger.logSend(messageId, formattedTo, subject);
+                } else {
+                    throw new Exception("Message save failed: " + response3);
+                }
             }
 
         } catch (Exception e) {
@@ -184,6 +276,33 @@ public class ClientController {
         }
     }
 
+    private static long utf8Length(CharSequence text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.out.println("Failed to delete temp file " + file + ": " + e.getMessage());
+        }
+    }
+
     private String formatRecipients(String to) {
         if (to == null || to.trim().isEmpty()) {
             return "";
@@ -206,38 +325,12 @@ public class ClientController {
     }
 
     private boolean attemptReconnect() {
-        try {
-            System.out.println("Attempting automatic reconnect...");
-
-            if (tcpClient != null) {
-                tcpClient.close();
-            }
-
-            tcpClient = new TCPClient("localhost", 1234);
-            boolean connected = tcpClient.connect();
-
-            if (connected) {
-                System.out.println("Reconnected successfully!");
-
-                String authCommand = "AUTH " + username + " " + "password";
-                String authResponse = tcpClient.sendCommand(authCommand);
-
-                if (authResponse != null && authResponse.startsWith("235")) {
-                    System.out.println("Re-authenticated successfully!");
-                    return true;
-                } else {
-                    System.out.println("Re-authentication failed: " + authResponse);
-                    return false;
-                }
-            } else {
-                System.out.println("Reconnection failed");
-                return false;
-            }
-
-        } catch (Exception e) {
-            System.out.println("Reconnection error: " + e.getMessage());
+        if (sessionManager == null) {
+            System.out.println("Cannot reconnect: no session established");
             return false;
         }
+        System.out.println("Attempting automatic reconnect...");
+        return sessionManager.recover();
     }
 
     private String extractMessageId(String response) {
@@ -251,6 +344,7 @@ public class ClientController {
     }
 
     public boolean checkConnection() {
+        TCPClient tcpClient = getTcpClient();
         if (tcpClient == null || !tcpClient.isConnected()) {
             System.out.println("Not connected to server");
             return false;
@@ -286,21 +380,7 @@ public class ClientController {
 
     private List<Message> getMessagesFromServer(String folder) {
         try {
-            System.out.println("Requesting " + folder + " messages from server...");
-            List<String> responses = tcpClient.sendMultiLineCommand("LIST " + folder);
-
-            if (responses == null || responses.isEmpty()) {
-                System.out.println("No response from server for LIST " + folder);
-                return new ArrayList<>();
-            }
-
-            System.out.println("Server response for " + folder + ": " + responses.size() + " lines");
-
-            List<Message> messages = parseRealMessagesFromServer(responses, folder);
-            System.out.println("Retrieved " + messages.size() + " real messages from " + folder);
-
-            return messages;
-
+            return fetchFolder(folder);
         } catch (Exception e) {
             System.out.println("Error getting " + folder + " messages: " + e.getMessage());
             logger.logError("LIST " + folder, e.getMessage());
@@ -308,91 +388,379 @@ public class ClientController {
         }
     }
 
-    private List<Message> parseRealMessagesFromServer(List<String> responses, String folder) {
-        List<Message> messages = new ArrayList<>();
+    private List<Message> fetchFolder(String folder) throws Exception {
+        FolderSync sync = folderSyncs.get(folder);
+        long sequence = sync != null ? sync.startListing() : 0;
+        List<Message> messages = listFolder(folder);
+        indexHeaders(messages);
+        if (sync != null) {
+            messages = sync.applyFull(sequence, messages).getSnapshot();
+            retainListedPrefetches();
+        }
+        storeFolder(folder, messages);
+        return messages;
+    }
 
-        for (String response : responses) {
-            if (response.startsWith("213 ") && !response.equals("213 END") && !response.matches("213 \\d+")) {
-                String messageData = response.substring(4);
-                String[] parts = messageData.split(" ", 5);
+    public FolderDelta syncFolder(String folder) throws Exception {
+        FolderSync sync = folderSyncs.get(folder);
+        if (sync == null) {
+            throw new IllegalArgumentException("Unknown folder: " + folder);
+        }
 
-                if (parts.length >= 4) {
-                    try {
-                        Message msg = new Message();
-                        msg.setId(parts[0]);
-                        msg.setFrom(parts[1]);
+        // The LIST round trip, disk write and indexing run outside the sync's
+        // monitor; it is only held to read the high-water mark and to apply the
+        // listing, so folder switches never wait behind a slow server. Listings
+        // are numbered when sent, so an overlapping older one is dropped.
+        FolderDelta delta = null;
+        if (!sync.needsFullSync() && !Boolean.FALSE.equals(listSinceSupported)) {
+            delta = syncSince(folder, sync);
+        }
+        if (delta == null) {
+            long sequence = sync.startListing();
+            List<Message> listing = listFolder(folder);
+            delta = sync.applyFull(sequence, listing);
+        }
+        if (!delta.isEmpty()) {
+            storeFolder(folder, delta.getSnapshot());
+            indexHeaders(delta.getAdded());
+            if (!delta.getRemoved().isEmpty()) {
+                retainListedPrefetches();
+            }
+        }
+        System.out.println("Synced " + delta);
+        return delta;
+    }
 
-                        String subject = parts.length >= 5 ? parts[4] : "No Subject";
-                        msg.setSubject(subject);
+    private FolderDelta syncSince(String folder, FolderSync sync) throws Exception {
+        long sequence = sync.startListing();
+        long since = Math.max(0, sync.getHighWaterMark());
+        String command = "LIST " + folder + " SINCE " + since;
+        List<String> responses = pooled(client -> client.sendMultiLineCommand(command));
 
-                        int size = Integer.parseInt(parts[2]);
-                        long timestamp = Long.parseLong(parts[3]);
-                        msg.setTimestamp(timestamp);
+        if (responses == null || responses.isEmpty()) {
+            throw new ServerException("No response from server for " + command, null);
+        }
+        if (responses.get(0).startsWith("5")) {
+            System.out.println("Server does not support LIST SINCE - falling back to full listings");
+            listSinceSupported = false;
+            return null;
+        }
 
-                        msg.setBody("");
-                        msg.setTo("");
-                        msg.setRead(folder.equals("SENT") || folder.equals("ARCHIVE"));
+        List<Message> newer = parseRealMessagesFromServer(responses, folder);
+        if (FolderSync.isIgnoredSince(newer, since)) {
+            System.out.println("Server ignored LIST SINCE - falling back to full listings");
+            listSinceSupported = false;
+            return sync.applyFull(sequence, newer);
+        }
+        listSinceSupported = true;
+        return sync.applyIncremental(sequence, newer);
+    }
 
-                        messages.add(msg);
+    private static Map<String, FolderSync> newFolderSyncs() {
+        return FolderSync.forFolders(Config.SYNC_FULL_INTERVAL, "INBOX", "SENT", "ARCHIVE");
+    }
 
-                    } catch (Exception e) {
-                        System.out.println("Parse error: " + e.getMessage());
-                        logger.logError("PARSE MESSAGE", e.getMessage());
-                    }
+    public HeaderStore getFolderHeaders(String folder) throws Exception {
+        System.out.println("Requesting " + folder + " headers from server...");
+        HeaderStore headers = new HeaderStore(folder);
+        ListEntryParser entry = new ListEntryParser();
+        boolean read = folder.equals("SENT") || folder.equals("ARCHIVE");
+        boolean archived = folder.equals("ARCHIVE");
+        String[] rejection = new String[1];
+        boolean[] first = {true};
+
+        boolean received = pooled(client -> client.streamMultiLineCommand("LIST " + folder, line -> {
+            if (first[0]) {
+                first[0] = false;
+                if (line.startsWith("5")) {
+                    rejection[0] = line;
+                    return;
                 }
             }
+            try {
+                if (entry.parse(line)) {
+                    headers.add(entry.id(), entry.line(), entry.fromStart(), entry.fromEnd(), null,
+                            entry.hasSubject() ? entry.subject() : "No Subject",
+                            entry.timestamp(), entry.size(), read, archived);
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Parse error: " + e.getMessage());
+                logger.logError("PARSE MESSAGE", e.getMessage());
+            }
+        }));
+
+        if (!received) {
+            throw new ServerException("No response from server for LIST " + folder, null);
         }
+        if (rejection[0] != null) {
+            throw new ServerException("LIST " + folder + " rejected", rejection[0]);
+        }
+        for (int row = 0; row < headers.size(); row++) {
+            substringIndex.addHeaders(headers.getId(row), headers.getFrom(row), headers.getSubject(row));
+        }
+        System.out.println("Retrieved " + headers);
+        return headers;
+    }
+
+    private List<Message> listFolder(String folder) throws Exception {
+        System.out.println("Requesting " + folder + " messages from server...");
+        List<String> responses = pooled(client -> client.sendMultiLineCommand("LIST " + folder));
+
+        if (responses == null || responses.isEmpty()) {
+            throw new ServerException("No response from server for LIST " + folder, null);
+        }
+        if (responses.get(0).startsWith("5")) {
+            throw new ServerException("LIST " + folder + " rejected", responses.get(0));
+        }
+
+        System.out.println("Server response for " + folder + ": " + responses.size() + " lines");
+
+        List<Message> messages = parseRealMessagesFromServer(responses, folder);
+        System.out.println("Retrieved " + messages.size() + " real messages from " + folder);
         return messages;
     }
 
-    public Message getMessage(String messageId) {
+    private void storeFolder(String folder, List<Message> messages) {
+        MailboxStore store = mailboxStore;
+        if (store != null) {
+            try {
+                IoExecutor.uninterruptibly(() -> {
+                    store.replaceFolder(folder, messages);
+                    store.checkpoint();
+                    return null;
+                });
+            } catch (Exception e) {
+                System.out.println("Failed to store " + folder + " offline: " + e.getMessage());
+                logger.logError("MAILBOX STORE", e.getMessage());
+            }
+        }
+    }
+
+    public List<Message> getOfflineMessages(String folder) {
+        MailboxStore store = mailboxStore;
+        return store != null ? store.getFolder(folder) : new ArrayList<>();
+    }
+
+    public boolean hasOfflineFolder(String folder) {
+        MailboxStore store = mailboxStore;
+        return store != null && store.hasFolder(folder);
+    }
+
+    private void openMailboxStore(String username) {
+        closeMailboxStore();
         try {
-            System.out.println("Retrieving FULL message: " + messageId);
-            List<String> responses = tcpClient.sendMultiLineCommand("RETR " + messageId);
+            mailboxStore = MailboxStore.open(Paths.get(Config.MAILBOX_DIR, username), Config.MAILBOX_SEGMENT_SIZE);
+        } catch (IOException e) {
+            System.out.println("Offline mailbox unavailable: " + e.getMessage());
+            logger.logError("MAILBOX STORE", e.getMessage());
+        }
+    }
 
-            if (responses == null || responses.isEmpty()) {
-                System.out.println("No response for RETR command");
-                return null;
+    private void closeMailboxStore() {
+        MailboxStore store = mailboxStore;
+        mailboxStore = null;
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                System.out.println("Error closing offline mailbox: " + e.getMessage());
             }
+        }
+    }
 
-            if (responses.get(0).startsWith("550")) {
-                System.out.println("Message not found: " + responses.get(0));
-                return null;
+    // Reads run on the active segment's FileChannel, which an interrupt from a
+    // cancelled or timed-out request would close for good.
+    private static Message readStoredBody(MailboxStore store, String messageId) throws IOException {
+        try {
+            return IoExecutor.uninterruptibly(() -> store.getBody(messageId));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Message loadStoredBody(String messageId) {
+        MailboxStore store = mailboxStore;
+        if (store == null) {
+            return null;
+        }
+        try {
+            Message stored = readStoredBody(store, messageId);
+            if (stored != null) {
+                System.out.println("Loaded message " + messageId + " from offline store");
+                messageCache.put(stored);
+                if (!searchIndex.contains(messageId)) {
+                    indexBody(stored, false);
+                }
+            }
+            return stored;
+        } catch (IOException e) {
+            System.out.println("Failed to read stored message " + messageId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void retainBody(Message msg) {
+        if (msg == null) {
+            return;
+        }
+        messageCache.put(msg);
+        storeBody(msg);
+        indexBody(msg, false);
+    }
+
+    // Interactive retrievals only offer their body to the indexer; bulk
+    // retrievals wait for room so an export is throttled to the indexing rate.
+    private void indexBody(Message msg, boolean bulk) {
+        if (msg == null) {
+            return;
+        }
+        String body = msg.hasSpilledBody() ? null : msg.getBody();
+        if (bulk) {
+            indexingPipeline.submit(msg.getId(), msg.getFrom(), msg.getSubject(), body);
+        } else {
+            indexingPipeline.offer(msg.getId(), msg.getFrom(), msg.getSubject(), body);
+        }
+    }
+
+    private void indexHeaders(List<Message> messages) {
+        for (Message msg : messages) {
+            substringIndex.addHeaders(msg.getId(), msg.getFrom(), msg.getSubject());
+        }
+    }
+
+    private String folderOf(String messageId) {
+        for (Map.Entry<String, FolderSync> entry : folderSyncs.entrySet()) {
+            if (entry.getValue().contains(messageId)) {
+                return entry.getKey();
             }
+        }
+        return "INBOX";
+    }
 
-            Message msg = new Message();
-            msg.setId(messageId);
-
-            StringBuilder bodyBuilder = new StringBuilder();
-            boolean inBody = false;
-
-            for (String line : responses) {
-                if (line.startsWith("214 FROM:")) {
-                    msg.setFrom(line.substring(9));
-                } else if (line.startsWith("214 TO:")) {
-                    String toValue = line.substring(7).trim();
-                    msg.setTo(toValue);
-                } else if (line.startsWith("214 SUBJ:")) {
-                    msg.setSubject(line.substring(9));
-                } else if (line.startsWith("214 TIMESTAMP:")) {
-                    try {
-                        long timestamp = Long.parseLong(line.substring(14));
-                        msg.setTimestamp(timestamp);
-                    } catch (NumberFormatException e) {
-                        msg.setTimestamp(System.currentTimeMillis());
+    private void indexStoredBodies() {
+        MailboxStore store = mailboxStore;
+        if (store == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int queued = 0;
+        for (String folder : folderSyncs.keySet()) {
+            List<Message> headers = store.getFolder(folder);
+            indexHeaders(headers);
+            for (Message header : headers) {
+                if (!store.hasBody(header.getId()) || searchIndex.contains(header.getId())) {
+                    continue;
+                }
+                try {
+                    Message stored = readStoredBody(store, header.getId());
+                    if (stored != null && indexingPipeline.submit(stored.getId(), folder, stored.getFrom(),
+                            stored.getSubject(), stored.getBody())) {
+                        queued++;
                     }
-                } else if (line.equals("214 BODY")) {
-                    inBody = true;
-                } else if (inBody && !line.equals("214 END")) {
-                    bodyBuilder.append(line).append("\n");
+                } catch (IOException e) {
+                    System.out.println("Failed to index stored message " + header.getId() + ": " + e.getMessage());
                 }
             }
+        }
+        System.out.println("Queued " + queued + " stored messages for indexing in "
+                + (System.currentTimeMillis() - start) + "ms (" + indexingPipeline.getStats() + ")");
+    }
+
+    public List<InvertedIndex.SearchHit> searchMessages(String query, String folder, int limit) {
+        long start = System.nanoTime();
+        List<InvertedIndex.SearchHit> hits = searchIndex.search(query, folder, limit);
+        System.out.println("Search '" + query + "' in " + folder + ": " + hits.size() + " hits in "
+                + (System.nanoTime() - start) / 1000 + "us");
+        return hits;
+    }
 
-            msg.setBody(bodyBuilder.toString().trim());
-            System.out.println("Retrieved FULL message: " + msg.getSubject());
-            logger.logRetr(messageId, true);
-            return msg;
+    public List<String> findSubstring(String text) {
+        long start = System.nanoTime();
+        List<String> matches = substringIndex.search(text, this::bodyForVerification);
+        if (matches != null) {
+            System.out.println("Substring '" + text + "': " + matches.size() + " matches in "
+                    + (System.nanoTime() - start) / 1000 + "us");
+        }
+        return matches;
+    }
 
+    private CharSequence bodyForVerification(String messageId) {
+        String cached = messageCache.peekBody(messageId);
+        if (cached != null) {
+            return cached;
+        }
+        MailboxStore store = mailboxStore;
+        if (store != null) {
+            try {
+                Message stored = readStoredBody(store, messageId);
+                if (stored != null) {
+                    return stored.getBody();
+                }
+            } catch (IOException e) {
+                System.out.println("Failed to read stored message " + messageId + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    public InvertedIndex getSearchIndex() { return searchIndex; }
+    public TrigramIndex getSubstringIndex() { return substringIndex; }
+    public IndexingPipeline getIndexingPipeline() { return indexingPipeline; }
+
+    private void storeBody(Message msg) {
+        MailboxStore store = mailboxStore;
+        // Spilled bodies are too large to hold as one record; they are
+        // retrieved again when next opened.
+        if (store == null || msg == null || msg.hasSpilledBody()) {
+            return;
+        }
+        try {
+            IoExecutor.uninterruptibly(() -> {
+                store.putBody(msg);
+                return null;
+            });
+        } catch (Exception e) {
+            System.out.println("Failed to store message " + msg.getId() + " offline: " + e.getMessage());
+            logger.logError("MAILBOX STORE", e.getMessage());
+        }
+    }
+
+    private List<Message> parseRealMessagesFromServer(List<String> responses, String folder) {
+        List<Message> messages = new ArrayList<>(responses.size());
+        ListEntryParser entry = new ListEntryParser();
+        boolean read = folder.equals("SENT") || folder.equals("ARCHIVE");
+
+        for (String response : responses) {
+            try {
+                if (!entry.parse(response)) {
+                    continue;
+                }
+                Message msg = new Message();
+                msg.setId(entry.id());
+                msg.setFrom(entry.from(senderPool));
+                msg.setSubject(entry.hasSubject() ? entry.subject() : "No Subject");
+                msg.setSize(entry.size());
+                msg.setTimestamp(entry.timestamp());
+
+                msg.setBody("");
+                msg.setTo("");
+                msg.setRead(read);
+
+                messages.add(msg);
+
+            } catch (Exception e) {
+                System.out.println("Parse error: " + e.getMessage());
+                logger.logError("PARSE MESSAGE", e.getMessage());
+            }
+        }
+        return messages;
+    }
+
+    public Message getMessage(String messageId) {
+        try {
+            return fetchMessage(messageId);
         } catch (Exception e) {
             System.out.println("Error getting message: " + e.getMessage());
             logger.logRetr(messageId, false);
@@ -400,25 +768,249 @@ public class ClientController {
         }
     }
 
-    public List<String> getOnlineUsers() {
-        try {
-            System.out.println("Requesting online users from server...");
-            List<String> responses = tcpClient.sendMultiLineCommand("WHO");
+    private Message fetchMessage(String messageId) throws Exception {
+        Message cached = messageCache.get(messageId);
+        if (cached != null) {
+            System.out.println("Cache hit for message: " + messageId);
+            markPrefetchConsumed(messageId);
+            return cached;
+        }
+        Message stored = loadStoredBody(messageId);
+        if (stored != null) {
+            markPrefetchConsumed(messageId);
+            return stored;
+        }
+
+        System.out.println("Retrieving FULL message: " + messageId);
 
-            List<String> onlineUsers = new ArrayList<>();
+        MessageAssembler assembler = new MessageAssembler(messageId);
+        retrieveMessage(messageId, assembler);
+
+        Message msg = assembler.build();
+        retainBody(msg);
+        System.out.println("Retrieved FULL message: " + msg.getSubject());
+        return msg;
+    }
+
+    public void streamMessage(String messageId, MessageStreamListener listener) throws Exception {
+        Message cached = messageCache.get(messageId);
+        if (cached != null) {
+            System.out.println("Cache hit for message: " + messageId);
+            markPrefetchConsumed(messageId);
+            MessageCache.replay(cached, listener);
+            return;
+        }
+        Message stored = loadStoredBody(messageId);
+        if (stored != null) {
+            markPrefetchConsumed(messageId);
+            MessageCache.replay(stored, listener);
+            return;
+        }
+
+        MessageCache.Recorder recorder = new MessageCache.Recorder(messageId, listener, messageCache.getMaxBytes());
+        retrieveMessage(messageId, recorder);
+        Message recorded = recorder.toMessage();
+        retainBody(recorded);
+    }
+
+    private void prefetchMessage(String messageId, LongConsumer reserve) throws Exception {
+        MailboxStore store = mailboxStore;
+        if (messageCache.contains(messageId) || (store != null && store.hasBody(messageId))) {
+            return;
+        }
+
+        MessageAssembler assembler = new MessageAssembler(messageId);
+        retrieveMessage(messageId, assembler);
+        Message msg = assembler.build();
+        if (msg.hasSpilledBody()) {
+            msg.getBodyHandle().release();
+            return;
+        }
+        reserve.accept(Math.max(1, utf8Length(msg.getBody())));
+        retainBody(msg);
+    }
+
+    public void prefetchAdjacent(List<String> messageIds) {
+        MessagePrefetcher current = prefetcher;
+        if (current != null) {
+            current.prefetchAdjacent(messageIds);
+        }
+    }
+
+    public void prefetchUnread(List<String> messageIds) {
+        MessagePrefetcher current = prefetcher;
+        if (current != null) {
+            current.prefetchUnread(messageIds);
+        }
+    }
+
+    public MessagePrefetcher getPrefetcher() { return prefetcher; }
+
+    // Called on folder switch: bodies prefetched for the previous folder no
+    // longer count against the budget, and its queue is dropped.
+    public void clearPrefetch() {
+        MessagePrefetcher current = prefetcher;
+        if (current != null) {
+            current.clear();
+        }
+    }
 
-            for (String response : responses) {
-                System.out.println("WHO response: " + response);
-                if (response.startsWith("212U")) {
-                    String userInfo = response.substring(5);
-                    onlineUsers.add(userInfo);
+    private void releasePrefetched(String messageId) {
+        MessagePrefetcher current = prefetcher;
+        if (current != null) {
+            current.release(messageId);
+        }
+    }
+
+    private void retainListedPrefetches() {
+        MessagePrefetcher current = prefetcher;
+        if (current != null) {
+            current.retainListed(this::isListed);
+        }
+    }
+
+    private boolean isListed(String messageId) {
+        for (FolderSync sync : folderSyncs.values()) {
+            if (sync.contains(messageId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void noteUserActivity() {
+        MessagePrefetcher current = prefetcher;
+        if (current != null) {
+            current.noteUserActivity();
+        }
+    }
+
+    private void markPrefetchConsumed(String messageId) {
+        MessagePrefetcher current = prefetcher;
+        if (current != null) {
+            current.consumed(messageId);
+        }
+    }
+
+    private boolean isConnectionBusy() {
+        ConnectionPool pool = connectionPool;
+        if (pool == null || !isConnected()) {
+            return true;
+        }
+        return ioExecutor.getActiveCount() > 0
+                || (pool.getIdleCount() == 0 && pool.getOpenCount() >= pool.getMaxSize());
+    }
+
+    private void retrieveMessage(String messageId, MessageStreamListener listener) throws Exception {
+        RetrStreamDecoder decoder = new RetrStreamDecoder(listener);
+        boolean received = pooled(client -> client.streamMultiLineCommand("RETR " + messageId, decoder));
+
+        if (!decoder.isComplete()) {
+            if (decoder.getErrorResponse() != null) {
+                throw new ServerException("RETR " + messageId + " failed", decoder.getErrorResponse());
+            }
+            throw new ServerException(received ? "Incomplete RETR response for " + messageId
+                    : "No response for RETR " + messageId, null);
+        }
+        logger.logRetr(messageId, true);
+    }
+
+    public static void applyHeader(Message msg, String name, String value) {
+        switch (name) {
+            case "FROM":
+                msg.setFrom(value);
+                break;
+            case "TO":
+                msg.setTo(value);
+                break;
+            case "SUBJ":
+                msg.setSubject(value);
+                break;
+            case "TIMESTAMP":
+                try {
+                    msg.setTimestamp(Long.parseLong(value));
+                } catch (NumberFormatException e) {
+                    msg.setTimestamp(System.currentTimeMillis());
                 }
+                break;
+        }
+    }
+
+    public Map<String, Message> getMessages(List<String> messageIds) {
+        Map<String, Message> messages = new LinkedHashMap<>();
+        if (messageIds == null || messageIds.isEmpty()) {
+            return messages;
+        }
+
+        List<String> uncached = new ArrayList<>();
+        for (String messageId : messageIds) {
+            Message cached = messageCache.get(messageId);
+            if (cached != null) {
+                messages.put(messageId, cached);
+            } else {
+                uncached.add(messageId);
             }
+        }
+        if (uncached.isEmpty()) {
+            return messages;
+        }
 
-            System.out.println("Retrieved " + onlineUsers.size() + " online users from server");
-            logger.logWho("UPDATE", onlineUsers.size());
-            return onlineUsers;
+        System.out.println("Retrieving " + uncached.size() + " messages (pipelined)");
+        Map<String, CompletableFuture<List<String>>> pending = new LinkedHashMap<>();
+        try {
+            pooled(client -> {
+                for (String messageId : uncached) {
+                    pending.put(messageId, client.sendPipelined("RETR " + messageId));
+                }
+                client.flushPipeline();
+                return null;
+            });
+        } catch (Exception e) {
+            System.out.println("Pipelined retrieval failed: " + e.getMessage());
+            logger.logError("RETR", e.getMessage());
+        }
 
+        for (Map.Entry<String, CompletableFuture<List<String>>> entry : pending.entrySet()) {
+            String messageId = entry.getKey();
+            try {
+                Message msg = parseRetrResponse(messageId, entry.getValue().join());
+                if (msg != null) {
+                    messages.put(messageId, msg);
+                    indexBody(msg, true);
+                    logger.logRetr(messageId, true);
+                } else {
+                    logger.logRetr(messageId, false);
+                }
+            } catch (Exception e) {
+                System.out.println("Error getting message " + messageId + ": " + e.getMessage());
+                logger.logRetr(messageId, false);
+            }
+        }
+        return messages;
+    }
+
+    private Message parseRetrResponse(String messageId, List<String> responses) throws IOException {
+        if (responses == null || responses.isEmpty()) {
+            System.out.println("No response for RETR command");
+            return null;
+        }
+
+        MessageAssembler assembler = new MessageAssembler(messageId);
+        RetrStreamDecoder decoder = new RetrStreamDecoder(assembler);
+        for (String line : responses) {
+            decoder.accept(line);
+        }
+
+        if (!decoder.isComplete()) {
+            System.out.println("Message not found: " + responses.get(0));
+            return null;
+        }
+        return assembler.build();
+    }
+
+    public List<String> getOnlineUsers() {
+        try {
+            return fetchOnlineUsers();
         } catch (Exception e) {
             System.out.println("Error getting online users: " + e.getMessage());
             logger.logError("WHO", e.getMessage());
@@ -429,10 +1021,33 @@ public class ClientController {
         }
     }
 
+    private List<String> fetchOnlineUsers() throws Exception {
+        System.out.println("Requesting online users from server...");
+        List<String> responses = pooled(client -> client.sendMultiLineCommand("WHO"));
+
+        if (responses == null || responses.isEmpty()) {
+            throw new ServerException("No response from server for WHO", null);
+        }
+
+        List<String> onlineUsers = new ArrayList<>();
+
+        for (String response : responses) {
+            System.out.println("WHO response: " + response);
+            if (response.startsWith("212U")) {
+                String userInfo = response.substring(5);
+                onlineUsers.add(userInfo);
+            }
+        }
+
+        System.out.println("Retrieved " + onlineUsers.size() + " online users from server");
+        logger.logWho("UPDATE", onlineUsers.size());
+        return onlineUsers;
+    }
+
     public void markMessageAsRead(String messageId) throws Exception {
-        String response = tcpClient.sendCommand("MARK " + messageId);
+        String response = pooled(client -> client.sendCommand("MARK " + messageId));
         if (response == null || !response.startsWith("250")) {
-            throw new Exception("Server refused to mark message as read: " + response);
+            throw new ServerException("Server refused to mark message as read", response);
         }
         System.out.println("Marked message as read: " + messageId);
         logger.log("Marked as read: " + messageId);
@@ -440,11 +1055,10 @@ public class ClientController {
 
     public boolean archiveMessage(String messageId) {
         try {
-            String response = tcpClient.sendCommand("DELE " + messageId);
-            boolean success = response != null && response.startsWith("250");
-            System.out.println("Archive " + (success ? "successful" : "failed") + " for: " + messageId);
-            logger.logArchive(messageId, success, "ARCHIVE");
-            return success;
+            moveMessage("DELE", messageId);
+            return true;
+        } catch (ServerException e) {
+            return false;
         } catch (Exception e) {
             System.out.println("Error archiving message: " + e.getMessage());
             logger.logError("ARCHIVE", e.getMessage());
@@ -454,11 +1068,10 @@ public class ClientController {
 
     public boolean restoreMessage(String messageId) {
         try {
-            String response = tcpClient.sendCommand("RESTORE " + messageId);
-            boolean success = response != null && response.startsWith("250");
-            System.out.println("Restore " + (success ? "successful" : "failed") + " for: " + messageId);
-            logger.logArchive(messageId, success, "RESTORE");
-            return success;
+            moveMessage("RESTORE", messageId);
+            return true;
+        } catch (ServerException e) {
+            return false;
         } catch (Exception e) {
             System.out.println("Error restoring message: " + e.getMessage());
             logger.logError("RESTORE", e.getMessage());
@@ -466,12 +1079,28 @@ public class ClientController {
         }
     }
 
+    private void moveMessage(String command, String messageId) throws Exception {
+        String action = command.equals("DELE") ? "ARCHIVE" : "RESTORE";
+        messageCache.invalidate(messageId);
+        String response = pooled(client -> client.sendCommand(command + " " + messageId));
+        boolean success = response != null && response.startsWith("250");
+        if (success) {
+            folderSyncs.get("INBOX").requestFullSync();
+            folderSyncs.get("ARCHIVE").requestFullSync();
+            searchIndex.move(messageId, command.equals("DELE") ? "ARCHIVE" : "INBOX");
+        }
+        System.out.println(action + " " + (success ? "successful" : "failed") + " for: " + messageId);
+        logger.logArchive(messageId, success, action);
+        if (!success) {
+            throw new ServerException(action + " " + messageId + " failed", response);
+        }
+    }
+
     public void setStatus(String status) {
         try {
-            String response = tcpClient.sendCommand("SETSTAT " + status);
-            boolean success = response != null && response.startsWith("250");
-            System.out.println("Status update: " + (success ? "success" : "failed"));
-            logger.log("Status changed to: " + status + " - " + (success ? "SUCCESS" : "FAILED"));
+            updateStatus(status);
+        } catch (ServerException e) {
+            // already logged by updateStatus
         } catch (Exception e) {
             System.out.println("Error setting status: " + e.getMessage());
             logger.logError("SETSTAT", e.getMessage());
@@ -480,9 +1109,7 @@ public class ClientController {
 
     public String getStats() {
         try {
-            String stats = tcpClient.sendCommand("STAT");
-            System.out.println("Stats: " + stats);
-            return stats != null ? stats : "211 M:0 S:0 U:0";
+            return fetchStats();
         } catch (Exception e) {
             System.out.println("Error getting stats: " + e.getMessage());
             logger.logError("STAT", e.getMessage());
@@ -490,8 +1117,129 @@ public class ClientController {
         }
     }
 
+    private String fetchStats() throws Exception {
+        String stats = pooled(client -> client.sendCommand("STAT"));
+        System.out.println("Stats: " + stats);
+        if (stats == null || !stats.startsWith("211")) {
+            throw new ServerException("STAT failed", stats);
+        }
+        return stats;
+    }
+
+    private void updateStatus(String status) throws Exception {
+        TCPClient tcpClient = getTcpClient();
+        if (tcpClient == null) {
+            throw new IllegalStateException("Not connected");
+        }
+        String response = tcpClient.sendCommand("SETSTAT " + status);
+        boolean success = response != null && response.startsWith("250");
+        System.out.println("Status update: " + (success ? "success" : "failed"));
+        logger.log("Status changed to: " + status + " - " + (success ? "SUCCESS" : "FAILED"));
+        if (!success) {
+            throw new ServerException("SETSTAT " + status + " failed", response);
+        }
+    }
+
+    public CompletableFuture<List<Message>> getInboxMessagesAsync() {
+        return async("LIST INBOX", () -> fetchFolder("INBOX"));
+    }
+
+    public CompletableFuture<List<Message>> getSentMessagesAsync() {
+        return async("LIST SENT", () -> fetchFolder("SENT"));
+    }
+
+    public CompletableFuture<List<Message>> getArchivedMessagesAsync() {
+        return async("LIST ARCHIVE", () -> fetchFolder("ARCHIVE"));
+    }
+
+    public CompletableFuture<Message> getMessageAsync(String messageId) {
+        return async("RETR " + messageId, () -> fetchMessage(messageId));
+    }
+
+    public CompletableFuture<HeaderStore> getFolderHeadersAsync(String folder) {
+        return async("LIST " + folder, () -> getFolderHeaders(folder));
+    }
+
+    public CompletableFuture<FolderDelta> syncFolderAsync(String folder) {
+        return async("SYNC " + folder, () -> syncFolder(folder));
+    }
+
+    public CompletableFuture<List<String>> getOnlineUsersAsync() {
+        return async("WHO", this::fetchOnlineUsers);
+    }
+
+    public CompletableFuture<String> getStatsAsync() {
+        return async("STAT", this::fetchStats);
+    }
+
+    public CompletableFuture<Void> markMessageAsReadAsync(String messageId) {
+        return async("MARK " + messageId, () -> {
+            markMessageAsRead(messageId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> archiveMessageAsync(String messageId) {
+        return async("DELE " + messageId, () -> {
+            moveMessage("DELE", messageId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> restoreMessageAsync(String messageId) {
+        return async("RESTORE " + messageId, () -> {
+            moveMessage("RESTORE", messageId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> setStatusAsync(String status) {
+        return async("SETSTAT " + status, () -> {
+            updateStatus(status);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> sendMessageAsync(String to, String subject, String body) {
+        return async("SEND", () -> {
+            sendMessage(to, subject, body);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> sendMessageAsync(String to, String subject, Path bodyFile) {
+        return async("SEND " + bodyFile.getFileName(), () -> {
+            sendMessage(to, subject, bodyFile);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> async(String operation, Callable<T> task) {
+        noteUserActivity();
+        return ioExecutor.submit(operation, task, Config.ASYNC_TIMEOUT)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        logger.logError(operation, String.valueOf(cause.getMessage()));
+                    }
+                });
+    }
+
     public void logout() {
         logger.log("LOGOUT - User: " + username);
+        logger.log("Message cache: " + messageCache.getStats());
+        logger.log("Indexing: " + indexingPipeline.getStats());
+        indexingPipeline.shutdown();
+        if (prefetcher != null) {
+            logger.log("Prefetch: " + prefetcher.getStats());
+            prefetcher.clear();
+            prefetcher.shutdown();
+            prefetcher = null;
+        }
+        messageCache.clear();
+        closeMailboxStore();
+        TCPClient tcpClient = sessionManager != null ? sessionManager.close() : null;
         try {
             if (tcpClient != null && tcpClient.isConnected()) {
                 tcpClient.sendCommand("QUIT");
@@ -504,6 +1252,10 @@ public class ClientController {
         if (tcpClient != null) {
             tcpClient.close();
         }
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+        ioExecutor.shutdown();
         if (udpListener != null) {
             udpListener.stop();
         }
@@ -517,9 +1269,21 @@ public class ClientController {
         logger.close();
     }
 
+    private <T> T pooled(ConnectionPool.SessionTask<T> task) throws Exception {
+        if (connectionPool == null) {
+            throw new IllegalStateException("Not connected");
+        }
+        return connectionPool.execute(task);
+    }
+
     public String getUsername() { return username; }
-    public TCPClient getTcpClient() { return tcpClient; }
-    public boolean isConnected() { return tcpClient != null && tcpClient.isConnected(); }
+    public TCPClient getTcpClient() { return sessionManager != null ? sessionManager.getPrimary() : null; }
+    public ConnectionPool getConnectionPool() { return connectionPool; }
+    public MessageCache getMessageCache() { return messageCache; }
+    public boolean isConnected() {
+        TCPClient tcpClient = getTcpClient();
+        return tcpClient != null && tcpClient.isConnected();
+    }
 
     public void forceRefreshAfterSend() {
         System.out.println("Forcing refresh after send...");
@@ -0,0 +1,224 @@
+package client.controller;
+
+import client.network.TCPClient;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionPool {
+    public interface SessionTask<T> {
+        T execute(TCPClient client) throws Exception;
+    }
+
+    private static class PooledConnection {
+        final TCPClient client;
+        long lastUsed;
+
+        PooledConnection(TCPClient client) {
+            this.client = client;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private final SessionFactory factory;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final long acquireTimeoutMillis;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService maintenance;
+    private int openCount;
+    private boolean closed;
+
+    ConnectionPool(SessionFactory factory, int maxSize, long idleTimeoutMillis,
+                   long validationIntervalMillis, long acquireTimeoutMillis) {
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "maillite-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        maintenance.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public <T> T execute(SessionTask<T> task) throws Exception {
+        PooledConnection connection = acquire();
+        boolean completed = false;
+        try {
+            T result = task.execute(connection.client);
+            completed = true;
+            return result;
+        } finally {
+            release(connection, completed);
+        }
+    }
+
+    private PooledConnection acquire() throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + acquireTimeoutMillis;
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean create = false;
+
+            synchronized (this) {
+                while (candidate == null && !create) {
+                    if (closed) {
+                        throw new IOException("Connection pool is closed");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate == null) {
+                        if (openCount < maxSize) {
+                            openCount++;
+                            create = true;
+                        } else {
+                            long remaining = deadline - System.currentTimeMillis();
+                            if (remaining <= 0) {
+                                throw new IOException("Timed out waiting for a pooled connection");
+                            }
+                            wait(remaining);
+                        }
+                    }
+                }
+            }
+
+            if (create) {
+                try {
+                    PooledConnection connection = new PooledConnection(factory.open());
+                    System.out.println("Pool opened connection " + openCount + "/" + maxSize);
+                    return connection;
+                } catch (IOException e) {
+                    synchronized (this) {
+                        openCount--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+            }
+
+            if (isHealthy(candidate)) {
+                return candidate;
+            }
+            discard(candidate);
+        }
+    }
+
+    private boolean isHealthy(PooledConnection connection) {
+        if (!connection.client.isConnected()) {
+            return false;
+        }
+        if (System.currentTimeMillis() - connection.lastUsed < validationIntervalMillis) {
+            return true;
+        }
+        String response = connection.client.sendCommand("NOOP");
+        return response != null && response.startsWith("250");
+    }
+
+    // A task that failed may have stopped in the middle of a response, which
+    // the validation NOOP would not notice for a while; never reuse it.
+    private void release(PooledConnection connection, boolean completed) {
+        if (!completed || !connection.client.isConnected()) {
+            discard(connection);
+            return;
+        }
+
+        connection.lastUsed = System.currentTimeMillis();
+        synchronized (this) {
+            if (closed) {
+                openCount--;
+            } else {
+                idle.addFirst(connection);
+                notifyAll();
+                return;
+            }
+        }
+        connection.client.close();
+    }
+
+    private void discard(PooledConnection connection) {
+        System.out.println("Pool discarding unhealthy connection");
+        connection.client.close();
+        synchronized (this) {
+            openCount--;
+            notifyAll();
+        }
+    }
+
+    private void evictIdle() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() > 1) {
+                PooledConnection connection = it.next();
+                if (now - connection.lastUsed > idleTimeoutMillis) {
+                    it.remove();
+                    openCount--;
+                    evicted.add(connection);
+                }
+            }
+            if (!evicted.isEmpty()) {
+                notifyAll();
+            }
+        }
+
+        for (PooledConnection connection : evicted) {
+            connection.client.close();
+        }
+        if (!evicted.isEmpty()) {
+            System.out.println("Pool evicted " + evicted.size() + " idle connection(s)");
+        }
+    }
+
+    public void invalidateIdle() {
+        List<PooledConnection> stale;
+        synchronized (this) {
+            stale = new ArrayList<>(idle);
+            openCount -= idle.size();
+            idle.clear();
+            notifyAll();
+        }
+        for (PooledConnection connection : stale) {
+            connection.client.close();
+        }
+        if (!stale.isEmpty()) {
+            System.out.println("Pool invalidated " + stale.size() + " idle connection(s)");
+        }
+    }
+
+    public synchronized int getOpenCount() { return openCount; }
+    public synchronized int getIdleCount() { return idle.size(); }
+    public int getMaxSize() { return maxSize; }
+
+    public void close() {
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            openCount -= idle.size();
+            idle.clear();
+            notifyAll();
+        }
+        maintenance.shutdownNow();
+
+        for (PooledConnection connection : toClose) {
+            if (connection.client.isConnected()) {
+                connection.client.sendCommand("QUIT");
+            }
+            connection.client.close();
+        }
+    }
+}
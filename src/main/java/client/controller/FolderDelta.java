@@ -0,0 +1,44 @@
+package client.controller;
+
+import client.gui.models.Message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class FolderDelta {
+    private final String folder;
+    private final List<Message> added;
+    private final List<String> removed;
+    private final List<Message> changed;
+    private final List<Message> snapshot;
+    private final boolean incremental;
+
+    FolderDelta(String folder, List<Message> added, List<String> removed, List<Message> changed,
+                List<Message> snapshot, boolean incremental) {
+        this.folder = folder;
+        this.added = Collections.unmodifiableList(new ArrayList<>(added));
+        this.removed = Collections.unmodifiableList(new ArrayList<>(removed));
+        this.changed = Collections.unmodifiableList(new ArrayList<>(changed));
+        this.snapshot = Collections.unmodifiableList(snapshot);
+        this.incremental = incremental;
+    }
+
+    public String getFolder() { return folder; }
+    public List<Message> getAdded() { return added; }
+    public List<String> getRemoved() { return removed; }
+    public List<Message> getChanged() { return changed; }
+    public List<Message> getSnapshot() { return snapshot; }
+    public boolean isIncremental() { return incremental; }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FolderDelta{folder='%s', added=%d, removed=%d, changed=%d, total=%d, %s}",
+                folder, added.size(), removed.size(), changed.size(), snapshot.size(),
+                incremental ? "incremental" : "full");
+    }
+}
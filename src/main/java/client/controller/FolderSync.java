@@ -0,0 +1,170 @@
+package client.controller;
+
+import client.gui.models.Message;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+class FolderSync {
+    private final String folder;
+    private final int fullSyncInterval;
+
+    private final LinkedHashMap<String, Message> snapshot = new LinkedHashMap<>();
+    private boolean seeded;
+    private boolean descending;
+    private long highWaterMark = Long.MIN_VALUE;
+    private int syncsSinceFull;
+    private boolean fullSyncRequested;
+    // Listings are numbered when sent; one that arrives after a later listing
+    // has been applied is dropped rather than rolling the snapshot back.
+    private long listingsStarted;
+    private long lastApplied;
+
+    FolderSync(String folder, int fullSyncInterval) {
+        this.folder = folder;
+        this.fullSyncInterval = fullSyncInterval;
+    }
+
+    synchronized boolean needsFullSync() {
+        return !seeded || fullSyncRequested || syncsSinceFull >= fullSyncInterval;
+    }
+
+    synchronized long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    synchronized long startListing() {
+        return ++listingsStarted;
+    }
+
+    synchronized void requestFullSync() {
+        fullSyncRequested = true;
+    }
+
+    synchronized boolean contains(String messageId) {
+        return snapshot.containsKey(messageId);
+    }
+
+    synchronized List<Message> getSnapshot() {
+        return new ArrayList<>(snapshot.values());
+    }
+
+    synchronized FolderDelta applyFull(long sequence, List<Message> listing) {
+        if (sequence <= lastApplied) {
+            return superseded(sequence, false);
+        }
+        lastApplied = sequence;
+
+        LinkedHashMap<String, Message> incoming = new LinkedHashMap<>();
+        for (Message msg : listing) {
+            incoming.put(msg.getId(), msg);
+        }
+
+        List<Message> added = new ArrayList<>();
+        List<Message> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        if (seeded) {
+            for (String id : snapshot.keySet()) {
+                if (!incoming.containsKey(id)) {
+                    removed.add(id);
+                }
+            }
+            for (Message msg : incoming.values()) {
+                Message previous = snapshot.get(msg.getId());
+                if (previous == null) {
+                    added.add(msg);
+                } else if (!sameHeader(previous, msg)) {
+                    changed.add(msg);
+                }
+            }
+        } else {
+            added.addAll(incoming.values());
+        }
+
+        snapshot.clear();
+        snapshot.putAll(incoming);
+        descending = listing.size() > 1 && listing.get(0).getTimestamp() > listing.get(listing.size() - 1).getTimestamp();
+        highWaterMark = Long.MIN_VALUE;
+        for (Message msg : listing) {
+            highWaterMark = Math.max(highWaterMark, msg.getTimestamp());
+        }
+        seeded = true;
+        fullSyncRequested = false;
+        syncsSinceFull = 0;
+
+        return new FolderDelta(folder, added, removed, changed, new ArrayList<>(snapshot.values()), false);
+    }
+
+    synchronized FolderDelta applyIncremental(long sequence, List<Message> newer) {
+        if (sequence <= lastApplied) {
+            return superseded(sequence, true);
+        }
+        lastApplied = sequence;
+
+        List<Message> added = new ArrayList<>();
+        List<Message> changed = new ArrayList<>();
+        for (Message msg : newer) {
+            Message previous = snapshot.get(msg.getId());
+            if (previous == null) {
+                added.add(msg);
+            } else if (!sameHeader(previous, msg)) {
+                changed.add(msg);
+                snapshot.put(msg.getId(), msg);
+            }
+            highWaterMark = Math.max(highWaterMark, msg.getTimestamp());
+        }
+
+        if (!added.isEmpty()) {
+            if (descending) {
+                LinkedHashMap<String, Message> merged = new LinkedHashMap<>();
+                for (Message msg : added) {
+                    merged.put(msg.getId(), msg);
+                }
+                merged.putAll(snapshot);
+                snapshot.clear();
+                snapshot.putAll(merged);
+            } else {
+                for (Message msg : added) {
+                    snapshot.put(msg.getId(), msg);
+                }
+            }
+        }
+        syncsSinceFull++;
+
+        return new FolderDelta(folder, added, new ArrayList<>(), changed, new ArrayList<>(snapshot.values()), true);
+    }
+
+    private FolderDelta superseded(long sequence, boolean incremental) {
+        System.out.println("Dropping listing " + sequence + " of " + folder + ": listing " + lastApplied
+                + " was already applied");
+        return new FolderDelta(folder, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                new ArrayList<>(snapshot.values()), incremental);
+    }
+
+    static boolean isIgnoredSince(List<Message> listing, long since) {
+        for (Message msg : listing) {
+            if (msg.getTimestamp() < since) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sameHeader(Message a, Message b) {
+        return a.getTimestamp() == b.getTimestamp()
+                && a.isRead() == b.isRead()
+                && Objects.equals(a.getFrom(), b.getFrom())
+                && Objects.equals(a.getSubject(), b.getSubject());
+    }
+
+    static Map<String, FolderSync> forFolders(int fullSyncInterval, String... folders) {
+        Map<String, FolderSync> syncs = new LinkedHashMap<>();
+        for (String folder : folders) {
+            syncs.put(folder, new FolderSync(folder, fullSyncInterval));
+        }
+        return syncs;
+    }
+}
@@ -0,0 +1,158 @@
+package client.controller;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class IoExecutor {
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final AtomicInteger active = new AtomicInteger();
+
+    public IoExecutor(int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.permits = new Semaphore(this.maxConcurrency, true);
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("maillite-io-", 1).factory());
+    }
+
+    private static final ThreadLocal<Worker> CURRENT = new ThreadLocal<>();
+
+    private static final class Worker {
+        final Thread thread;
+        int shielded;
+        boolean interruptPending;
+
+        Worker(Thread thread) {
+            this.thread = thread;
+        }
+
+        synchronized void interrupt() {
+            if (shielded > 0) {
+                interruptPending = true;
+            } else {
+                thread.interrupt();
+            }
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(String operation, Callable<T> task) {
+        return submit(operation, task, 0);
+    }
+
+    // The timeout, if any, starts when the task gets a permit and begins
+    // running, not while it is still queued behind other work.
+    public <T> CompletableFuture<T> submit(String operation, Callable<T> task, long timeoutMillis) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        AtomicReference<Worker> runner = new AtomicReference<>();
+
+        // Cancellation and timeouts complete the future from outside; interrupt the
+        // worker so it stops waiting on the socket instead of holding a connection.
+        future.whenComplete((result, error) -> {
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                Worker worker = runner.get();
+                if (worker != null) {
+                    worker.interrupt();
+                }
+            }
+        });
+
+        executor.execute(() -> {
+            Thread thread = Thread.currentThread();
+            String baseName = thread.getName();
+            thread.setName(baseName + " [" + operation + "]");
+            Worker worker = new Worker(thread);
+            runner.set(worker);
+            CURRENT.set(worker);
+            try {
+                permits.acquire();
+                active.incrementAndGet();
+                try {
+                    if (timeoutMillis > 0) {
+                        future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+                    }
+                    if (!future.isDone()) {
+                        future.complete(task.call());
+                    }
+                } finally {
+                    active.decrementAndGet();
+                    permits.release();
+                }
+            } catch (InterruptedException e) {
+                future.completeExceptionally(e);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                runner.set(null);
+                CURRENT.remove();
+                Thread.interrupted();
+                thread.setName(baseName);
+            }
+        });
+        return future;
+    }
+
+    // Runs local disk work that must not be interrupted: an interrupt during a
+    // FileChannel write closes the channel for good. A cancel or timeout that
+    // arrives meanwhile is delivered once the work is done.
+    public static <T> T uninterruptibly(Callable<T> work) throws Exception {
+        Worker worker = CURRENT.get();
+        if (worker == null) {
+            return work.call();
+        }
+        synchronized (worker) {
+            worker.shielded++;
+            if (Thread.interrupted()) {
+                worker.interruptPending = true;
+            }
+        }
+        try {
+            return work.call();
+        } finally {
+            synchronized (worker) {
+                if (--worker.shielded == 0 && worker.interruptPending) {
+                    worker.interruptPending = false;
+                    worker.thread.interrupt();
+                }
+            }
+        }
+    }
+
+    public <T> void submit(String operation, Callable<T> task, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        submit(operation, task).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) {
+                if (onSuccess != null) onSuccess.accept(result);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                System.out.println("Background operation failed [" + operation + "]: " + cause.getMessage());
+                if (onError != null) onError.accept(cause);
+            }
+        }));
+    }
+
+    public void execute(String operation, Runnable task) {
+        submit(operation, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public int getActiveCount() { return active.get(); }
+    public int getMaxConcurrency() { return maxConcurrency; }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,165 @@
+package client.controller;
+
+import client.gui.models.SpilledMessageBody;
+import client.gui.models.Message;
+import client.gui.models.MessageBody;
+import client.utils.Config;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class MessageAssembler implements ClientController.MessageStreamListener {
+    private final Message message = new Message();
+    private final StringBuilder heapBody = new StringBuilder();
+    private final int spillThreshold;
+
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private ByteBuffer spillBuffer;
+    private CharsetEncoder encoder;
+    private long spilledBytes;
+    private IOException spillFailure;
+
+    MessageAssembler(String messageId) {
+        this(messageId, Config.BODY_SPILL_THRESHOLD);
+    }
+
+    MessageAssembler(String messageId, int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+        message.setId(messageId);
+    }
+
+    @Override
+    public void onHeader(String name, String value) {
+        ClientController.applyHeader(message, name, value);
+    }
+
+    @Override
+    public void onBodyStart() {
+    }
+
+    // Throwing here would abandon the RETR response mid-stream, so a failed
+    // spill is recorded, the rest of the body is dropped and build() reports it.
+    @Override
+    public void onBodyChunk(String chunk) {
+        if (spillFailure != null) {
+            return;
+        }
+        try {
+            if (spillChannel == null && heapBody.length() + chunk.length() > spillThreshold) {
+                uninterruptibly(this::startSpill);
+            }
+            if (spillChannel != null) {
+                uninterruptibly(() -> spill(CharBuffer.wrap(chunk)));
+            } else {
+                heapBody.append(chunk);
+            }
+        } catch (IOException e) {
+            spillFailure = e;
+            discardSpill();
+            heapBody.setLength(0);
+            heapBody.trimToSize();
+        }
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    // Bodies are kept exactly as received. Unlike the old line-by-line parser
+    // they are no longer trim()med, so leading and trailing blank lines and
+    // whitespace survive.
+    Message build() throws IOException {
+        if (spillFailure != null) {
+            throw new IOException("Failed to spill body of message " + message.getId() + " to disk", spillFailure);
+        }
+        if (spillChannel == null) {
+            message.setBody(heapBody.toString());
+            return message;
+        }
+
+        try {
+            uninterruptibly(() -> {
+                encoder.encode(CharBuffer.allocate(0), spillBuffer, true);
+                encoder.flush(spillBuffer);
+                writeSpillBuffer();
+                spillChannel.close();
+            });
+        } catch (IOException e) {
+            discardSpill();
+            throw e;
+        }
+
+        System.out.println("Spilled body of message " + message.getId() + " to disk (" + spilledBytes + " bytes)");
+        message.setBodyHandle(SpilledMessageBody.of(spillFile, spilledBytes));
+        return message;
+    }
+
+    private void startSpill() throws IOException {
+        spillFile = Files.createTempFile("maillite-body-", ".tmp");
+        spillChannel = FileChannel.open(spillFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        spillBuffer = ByteBuffer.allocateDirect(Config.STREAM_CHUNK_SIZE * 4);
+        encoder = StandardCharsets.UTF_8.newEncoder();
+
+        spill(CharBuffer.wrap(heapBody));
+        heapBody.setLength(0);
+        heapBody.trimToSize();
+    }
+
+    private void spill(CharBuffer chars) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, spillBuffer, false);
+            if (result.isOverflow()) {
+                writeSpillBuffer();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void writeSpillBuffer() throws IOException {
+        spillBuffer.flip();
+        while (spillBuffer.hasRemaining()) {
+            spilledBytes += spillChannel.write(spillBuffer);
+        }
+        spillBuffer.clear();
+    }
+
+    private interface SpillWork {
+        void run() throws IOException;
+    }
+
+    // The spill file is written through a FileChannel, which an interrupt from
+    // a cancelled or timed-out open would close halfway through the body.
+    private static void uninterruptibly(SpillWork work) throws IOException {
+        try {
+            IoExecutor.uninterruptibly(() -> {
+                work.run();
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void discardSpill() {
+        try {
+            if (spillChannel != null) spillChannel.close();
+            if (spillFile != null) Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            System.err.println("Failed to discard spill file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package client.controller;
+
+import client.gui.models.Message;
+import client.utils.Config;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class MessageCache {
+    private static final long ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private volatile Consumer<String> removalListener;
+
+    private static class Entry {
+        final Message message;
+        final long weight;
+
+        Entry(Message message, long weight) {
+            this.message = message;
+            this.weight = weight;
+        }
+    }
+
+    public MessageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Told about every body that leaves the cache through eviction or
+    // invalidation; called with the cache locked, so it must not call back in.
+    void setRemovalListener(Consumer<String> listener) {
+        this.removalListener = listener;
+    }
+
+    public synchronized Message get(String messageId) {
+        Entry entry = entries.get(messageId);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copyOf(entry.message);
+    }
+
+    synchronized String peekBody(String messageId) {
+        Entry entry = entries.get(messageId);
+        return entry != null ? entry.message.getBody() : null;
+    }
+
+    public synchronized boolean contains(String messageId) {
+        return entries.containsKey(messageId);
+    }
+
+    public synchronized boolean put(Message message) {
+        if (message == null || message.getId() == null || message.hasSpilledBody()) {
+            return false;
+        }
+        long weight = weigh(message);
+        if (weight > maxBytes) {
+            if (remove(message.getId())) {
+                notifyRemoved(message.getId());
+            }
+            return false;
+        }
+
+        Entry previous = entries.put(message.getId(), new Entry(copyOf(message), weight));
+        if (previous != null) {
+            currentBytes -= previous.weight;
+        }
+        currentBytes += weight;
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            currentBytes -= eldest.getValue().weight;
+            evictions++;
+            notifyRemoved(eldest.getKey());
+        }
+        return true;
+    }
+
+    public synchronized void invalidate(String messageId) {
+        if (remove(messageId)) {
+            notifyRemoved(messageId);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    static void replay(Message msg, ClientController.MessageStreamListener listener) {
+        if (msg.getFrom() != null) listener.onHeader("FROM", msg.getFrom());
+        if (msg.getTo() != null) listener.onHeader("TO", msg.getTo());
+        if (msg.getSubject() != null) listener.onHeader("SUBJ", msg.getSubject());
+        listener.onHeader("TIMESTAMP", String.valueOf(msg.getTimestamp()));
+        listener.onBodyStart();
+
+        String body = msg.getBody();
+        if (body != null) {
+            for (int start = 0; start < body.length(); start += Config.STREAM_CHUNK_SIZE) {
+                listener.onBodyChunk(body.substring(start, Math.min(body.length(), start + Config.STREAM_CHUNK_SIZE)));
+            }
+        }
+        listener.onComplete();
+    }
+
+    static class Recorder implements ClientController.MessageStreamListener {
+        private final ClientController.MessageStreamListener delegate;
+        private final Message message = new Message();
+        private final StringBuilder body = new StringBuilder();
+        private final long limit;
+        private boolean overflow;
+        private boolean complete;
+
+        Recorder(String messageId, ClientController.MessageStreamListener delegate, long limit) {
+            this.delegate = delegate;
+            this.limit = limit;
+            message.setId(messageId);
+        }
+
+        @Override
+        public void onHeader(String name, String value) {
+            ClientController.applyHeader(message, name, value);
+            delegate.onHeader(name, value);
+        }
+
+        @Override
+        public void onBodyStart() {
+            delegate.onBodyStart();
+        }
+
+        @Override
+        public void onBodyChunk(String chunk) {
+            if (!overflow) {
+                if (2L * (body.length() + chunk.length()) > limit) {
+                    overflow = true;
+                    body.setLength(0);
+                } else {
+                    body.append(chunk);
+                }
+            }
+            delegate.onBodyChunk(chunk);
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+            delegate.onComplete();
+        }
+
+        Message toMessage() {
+            if (!complete || overflow) {
+                return null;
+            }
+            message.setBody(body.toString());
+            return message;
+        }
+    }
+
+    public synchronized long getHitCount() { return hits; }
+    public synchronized long getMissCount() { return misses; }
+    public synchronized long getEvictionCount() { return evictions; }
+    public synchronized long getSizeBytes() { return currentBytes; }
+    public synchronized int getEntryCount() { return entries.size(); }
+    public long getMaxBytes() { return maxBytes; }
+
+    public synchronized String getStats() {
+        long lookups = hits + misses;
+        return String.format("entries=%d bytes=%d/%d hits=%d misses=%d evictions=%d hitRate=%.1f%%",
+                entries.size(), currentBytes, maxBytes, hits, misses, evictions,
+                lookups == 0 ? 0.0 : hits * 100.0 / lookups);
+    }
+
+    private boolean remove(String messageId) {
+        Entry removed = entries.remove(messageId);
+        if (removed != null) {
+            currentBytes -= removed.weight;
+            return true;
+        }
+        return false;
+    }
+
+    private void notifyRemoved(String messageId) {
+        Consumer<String> listener = removalListener;
+        if (listener != null) {
+            listener.accept(messageId);
+        }
+    }
+
+    private static long weigh(Message msg) {
+        return ENTRY_OVERHEAD + 2L * (length(msg.getId()) + length(msg.getFrom()) + length(msg.getTo())
+                + length(msg.getSubject()) + length(msg.getBody()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private static Message copyOf(Message msg) {
+        Message copy = new Message(msg.getId(), msg.getFrom(), msg.getTo(), msg.getSubject(),
+                msg.getBody(), msg.getTimestamp());
+        copy.setSize(msg.getSize());
+        copy.setRead(msg.isRead());
+        copy.setArchived(msg.isArchived());
+        return copy;
+    }
+}
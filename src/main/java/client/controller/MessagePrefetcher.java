@@ -0,0 +1,212 @@
+package client.controller;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+public class MessagePrefetcher {
+    // reserve is called with the body's size before the body is cached, so an
+    // eviction that follows at once already finds it charged to the budget.
+    interface Fetcher {
+        void prefetch(String messageId, LongConsumer reserve) throws Exception;
+    }
+
+    private final Fetcher fetcher;
+    private final long budgetBytes;
+    private final long idleDelayMillis;
+    private final BooleanSupplier connectionBusy;
+    private final Thread worker;
+
+    private final LinkedHashSet<String> adjacent = new LinkedHashSet<>();
+    private final LinkedHashSet<String> unread = new LinkedHashSet<>();
+    private final Map<String, Long> outstanding = new HashMap<>();
+    private long outstandingBytes;
+    private long prefetchedCount;
+    private long consumedCount;
+    private long failureCount;
+    private volatile long lastUserActivity;
+    private volatile boolean running = true;
+
+    MessagePrefetcher(Fetcher fetcher, long budgetBytes, long idleDelayMillis, BooleanSupplier connectionBusy) {
+        this.fetcher = fetcher;
+        this.budgetBytes = budgetBytes;
+        this.idleDelayMillis = idleDelayMillis;
+        this.connectionBusy = connectionBusy;
+        this.worker = new Thread(this::run, "maillite-prefetch");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public synchronized void prefetchAdjacent(List<String> messageIds) {
+        adjacent.clear();
+        for (String id : messageIds) {
+            if (id != null && !outstanding.containsKey(id)) {
+                adjacent.add(id);
+            }
+        }
+        notifyAll();
+    }
+
+    public synchronized void prefetchUnread(List<String> messageIds) {
+        unread.clear();
+        for (String id : messageIds) {
+            if (id != null && !outstanding.containsKey(id)) {
+                unread.add(id);
+            }
+        }
+        notifyAll();
+    }
+
+    public void noteUserActivity() {
+        lastUserActivity = System.currentTimeMillis();
+    }
+
+    public synchronized void consumed(String messageId) {
+        Long bytes = outstanding.remove(messageId);
+        if (bytes != null) {
+            outstandingBytes -= bytes;
+            consumedCount++;
+            notifyAll();
+        }
+    }
+
+    // The body was evicted or invalidated before it was opened; it no longer
+    // occupies the budget.
+    public synchronized void release(String messageId) {
+        Long bytes = outstanding.remove(messageId);
+        if (bytes != null) {
+            outstandingBytes -= bytes;
+            notifyAll();
+        }
+    }
+
+    // Drops queued and outstanding messages that are no longer in any listing,
+    // e.g. deleted on the server or moved by another client.
+    public synchronized void retainListed(Predicate<String> listed) {
+        adjacent.removeIf(id -> !listed.test(id));
+        unread.removeIf(id -> !listed.test(id));
+        Iterator<Map.Entry<String, Long>> it = outstanding.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (!listed.test(entry.getKey())) {
+                outstandingBytes -= entry.getValue();
+                it.remove();
+            }
+        }
+        notifyAll();
+    }
+
+    public synchronized void clear() {
+        adjacent.clear();
+        unread.clear();
+        outstanding.clear();
+        outstandingBytes = 0;
+        notifyAll();
+    }
+
+    public void shutdown() {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        worker.interrupt();
+    }
+
+    public synchronized long getOutstandingBytes() { return outstandingBytes; }
+    public synchronized long getPrefetchedCount() { return prefetchedCount; }
+    public synchronized long getConsumedCount() { return consumedCount; }
+
+    public synchronized String getStats() {
+        return String.format("prefetched=%d consumed=%d failed=%d outstanding=%d/%d bytes queued=%d",
+                prefetchedCount, consumedCount, failureCount, outstandingBytes, budgetBytes,
+                adjacent.size() + unread.size());
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                synchronized (this) {
+                    while (running && (nothingQueued() || outstandingBytes >= budgetBytes)) {
+                        wait();
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+
+                long quietFor = System.currentTimeMillis() - lastUserActivity;
+                if (quietFor < idleDelayMillis) {
+                    Thread.sleep(idleDelayMillis - quietFor);
+                    continue;
+                }
+                if (connectionBusy.getAsBoolean()) {
+                    Thread.sleep(idleDelayMillis);
+                    continue;
+                }
+
+                String messageId;
+                synchronized (this) {
+                    messageId = poll(adjacent);
+                    if (messageId == null) {
+                        messageId = poll(unread);
+                    }
+                }
+                if (messageId != null) {
+                    fetch(messageId);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void fetch(String messageId) throws InterruptedException {
+        long[] reserved = {0};
+        try {
+            fetcher.prefetch(messageId, bytes -> {
+                reserve(messageId, bytes);
+                reserved[0] = bytes;
+            });
+            if (reserved[0] > 0) {
+                System.out.println("Prefetched message " + messageId + " (" + reserved[0] + " bytes)");
+            }
+        } catch (Exception e) {
+            if (reserved[0] > 0) {
+                release(messageId);
+            }
+            synchronized (this) {
+                failureCount++;
+            }
+            System.out.println("Prefetch failed for " + messageId + ": " + e.getMessage());
+            Thread.sleep(idleDelayMillis);
+        }
+    }
+
+    private synchronized void reserve(String messageId, long bytes) {
+        Long previous = outstanding.put(messageId, bytes);
+        if (previous != null) {
+            outstandingBytes -= previous;
+        }
+        outstandingBytes += bytes;
+        prefetchedCount++;
+    }
+
+    private boolean nothingQueued() {
+        return adjacent.isEmpty() && unread.isEmpty();
+    }
+
+    private static String poll(LinkedHashSet<String> queue) {
+        Iterator<String> it = queue.iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        String next = it.next();
+        it.remove();
+        return next;
+    }
+}
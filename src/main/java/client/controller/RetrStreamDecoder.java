@@ -0,0 +1,69 @@
+package client.controller;
+
+import client.utils.Config;
+
+import java.util.function.Consumer;
+
+class RetrStreamDecoder implements Consumer<String> {
+    private final ClientController.MessageStreamListener listener;
+    private final StringBuilder chunk = new StringBuilder();
+    private boolean inBody;
+    private boolean firstBodyLine = true;
+    private boolean finished;
+    private String errorResponse;
+
+    RetrStreamDecoder(ClientController.MessageStreamListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void accept(String line) {
+        if (finished) {
+            return;
+        }
+
+        if (errorResponse == null && !inBody && line.startsWith("5")) {
+            errorResponse = line;
+            finished = true;
+            return;
+        }
+
+        if (inBody) {
+            if (line.equals("214 END")) {
+                flushChunk();
+                finished = true;
+                listener.onComplete();
+                return;
+            }
+            if (!firstBodyLine) {
+                chunk.append('\n');
+            }
+            firstBodyLine = false;
+            chunk.append(line);
+            if (chunk.length() >= Config.STREAM_CHUNK_SIZE) {
+                flushChunk();
+            }
+        } else if (line.startsWith("214 FROM:")) {
+            listener.onHeader("FROM", line.substring(9));
+        } else if (line.startsWith("214 TO:")) {
+            listener.onHeader("TO", line.substring(7).trim());
+        } else if (line.startsWith("214 SUBJ:")) {
+            listener.onHeader("SUBJ", line.substring(9));
+        } else if (line.startsWith("214 TIMESTAMP:")) {
+            listener.onHeader("TIMESTAMP", line.substring(14));
+        } else if (line.equals("214 BODY")) {
+            inBody = true;
+            listener.onBodyStart();
+        }
+    }
+
+    private void flushChunk() {
+        if (chunk.length() > 0) {
+            listener.onBodyChunk(chunk.toString());
+            chunk.setLength(0);
+        }
+    }
+
+    boolean isComplete() { return finished && errorResponse == null; }
+    String getErrorResponse() { return errorResponse; }
+}
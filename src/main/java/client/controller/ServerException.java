@@ -0,0 +1,12 @@
+package client.controller;
+
+public class ServerException extends Exception {
+    private final String response;
+
+    public ServerException(String message, String response) {
+        super(response != null ? message + ": " + response : message);
+        this.response = response;
+    }
+
+    public String getResponse() { return response; }
+}
@@ -0,0 +1,51 @@
+package client.controller;
+
+import client.network.TCPClient;
+
+import java.io.IOException;
+
+class SessionFactory {
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final int udpPort;
+    private final boolean nonBlocking;
+
+    SessionFactory(String host, int port, String username, String password, int udpPort, boolean nonBlocking) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.udpPort = udpPort;
+        this.nonBlocking = nonBlocking;
+    }
+
+    TCPClient open() throws IOException {
+        TCPClient client = new TCPClient(host, port, nonBlocking);
+        if (!client.connect()) {
+            throw new IOException("CONNECT failed to " + host + ":" + port);
+        }
+
+        try {
+            String heloResponse = client.sendCommand("HELO " + username + " UDP:" + udpPort);
+            if (heloResponse == null || !heloResponse.startsWith("250")) {
+                throw new IOException("HELO failed: " + heloResponse);
+            }
+
+            String authResponse = client.sendCommand("AUTH " + username + " " + password);
+            if (authResponse == null || !authResponse.startsWith("235")) {
+                throw new IOException("AUTH failed for user: " + username);
+            }
+            return client;
+
+        } catch (IOException e) {
+            client.close();
+            throw e;
+        }
+    }
+
+    String getHost() { return host; }
+    int getPort() { return port; }
+    String getUsername() { return username; }
+}
@@ -0,0 +1,209 @@
+package client.controller;
+
+import client.network.TCPClient;
+import client.utils.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+class SessionManager {
+    private final SessionFactory factory;
+    private final Logger logger;
+    private final boolean warmStandby;
+    private final long heartbeatMillis;
+    private final Runnable onRecovered;
+    private final ScheduledExecutorService scheduler;
+    private final Object recoveryLock = new Object();
+
+    private volatile TCPClient primary;
+    private TCPClient standby;
+    private boolean refillScheduled;
+    private boolean closed;
+
+    SessionManager(SessionFactory factory, TCPClient primary, Logger logger,
+                   boolean warmStandby, long heartbeatMillis, Runnable onRecovered) {
+        this.factory = factory;
+        this.primary = primary;
+        this.logger = logger;
+        this.warmStandby = warmStandby;
+        this.heartbeatMillis = heartbeatMillis;
+        this.onRecovered = onRecovered;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "maillite-session-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        if (warmStandby) {
+            scheduleStandbyRefill(0);
+        }
+    }
+
+    TCPClient getPrimary() { return primary; }
+
+    synchronized boolean hasStandby() { return standby != null; }
+
+    // Serialised so a heartbeat and a caller's reconnect cannot both open a
+    // connection; the second caller finds the first one's primary healthy.
+    boolean recover() {
+        synchronized (recoveryLock) {
+            TCPClient failed;
+            TCPClient candidate;
+            synchronized (this) {
+                if (closed) return false;
+                failed = primary;
+            }
+            if (failed != null && failed.isConnected() && ping(failed)) {
+                return true;
+            }
+            synchronized (this) {
+                candidate = standby;
+                standby = null;
+            }
+
+            if (failed != null) {
+                failed.close();
+            }
+
+            if (candidate != null && candidate.isConnected() && ping(candidate)) {
+                if (!publish(candidate)) {
+                    return false;
+                }
+                System.out.println("Session failover: promoted warm standby connection");
+                logger.log("SESSION failover to warm standby");
+                afterRecovery();
+                return true;
+            }
+            if (candidate != null) {
+                candidate.close();
+            }
+
+            try {
+                if (!publish(factory.open())) {
+                    return false;
+                }
+                System.out.println("Session resumed with a fresh connection to " + factory.getHost() + ":" + factory.getPort());
+                logger.log("SESSION resumed with new connection");
+                afterRecovery();
+                return true;
+            } catch (IOException e) {
+                System.out.println("Session resume failed: " + e.getMessage());
+                logger.logError("SESSION RESUME", e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    // Installs a recovered connection unless the session was closed while it
+    // was being opened, in which case the connection is closed instead.
+    private boolean publish(TCPClient client) {
+        synchronized (this) {
+            if (!closed) {
+                primary = client;
+                return true;
+            }
+        }
+        client.close();
+        return false;
+    }
+
+    private void afterRecovery() {
+        if (onRecovered != null) {
+            onRecovered.run();
+        }
+        if (warmStandby) {
+            scheduleStandbyRefill(0);
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            TCPClient current = primary;
+            boolean idle = current != null && System.currentTimeMillis() - current.getLastActivity() >= heartbeatMillis;
+            if (current == null || !current.isConnected() || (idle && !ping(current))) {
+                System.out.println("Session heartbeat: primary connection lost, recovering...");
+                logger.log("SESSION primary connection lost");
+                recover();
+            }
+
+            if (warmStandby) {
+                TCPClient spare;
+                synchronized (this) {
+                    spare = standby;
+                }
+                if (spare != null && (!spare.isConnected() || !ping(spare))) {
+                    synchronized (this) {
+                        if (standby == spare) {
+                            standby = null;
+                        }
+                    }
+                    spare.close();
+                    scheduleStandbyRefill(0);
+                } else if (spare == null) {
+                    scheduleStandbyRefill(0);
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Session heartbeat error: " + e.getMessage());
+        }
+    }
+
+    private synchronized void scheduleStandbyRefill(long delayMillis) {
+        if (closed || refillScheduled || standby != null) {
+            return;
+        }
+        refillScheduled = true;
+        scheduler.schedule(this::refillStandby, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void refillStandby() {
+        TCPClient spare = null;
+        try {
+            spare = factory.open();
+            System.out.println("Warm standby connection ready");
+        } catch (IOException e) {
+            System.out.println("Warm standby connection failed: " + e.getMessage());
+        }
+
+        synchronized (this) {
+            refillScheduled = false;
+            if (spare != null && !closed && standby == null) {
+                standby = spare;
+                spare = null;
+            }
+        }
+        if (spare != null) {
+            spare.close();
+        }
+    }
+
+    private boolean ping(TCPClient client) {
+        String response = client.sendCommand("NOOP");
+        return response != null && response.startsWith("250");
+    }
+
+    // Returns the primary as of closing; no later recovery can replace it.
+    TCPClient close() {
+        TCPClient current;
+        TCPClient spare;
+        synchronized (this) {
+            closed = true;
+            current = primary;
+            spare = standby;
+            standby = null;
+        }
+        scheduler.shutdownNow();
+        if (spare != null) {
+            if (spare.isConnected()) {
+                spare.sendCommand("QUIT");
+            }
+            spare.close();
+        }
+        return current;
+    }
+}
@@ -0,0 +1,187 @@
+package client.gui;
+
+import client.utils.Logger;
+
+import java.awt.EventQueue;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class EdtWatchdog {
+    private static final long[] BUCKET_LIMITS = {16, 50, 100, 250, 500, 1000, 2000, 5000};
+    private static final long ACTION_WINDOW = 5000;
+    private static final int STACK_DEPTH = 30;
+    private static final String IDLE = "idle";
+
+    private final Logger logger;
+    private final long intervalMillis;
+    private final long stallThresholdMillis;
+    private final Thread monitor;
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+
+    private volatile Thread edt;
+    private volatile long pendingSince;
+    private volatile String action = IDLE;
+    private volatile long actionStarted;
+    private volatile boolean running = true;
+    private long stallCount;
+    private long worstStall;
+    private String lastStallReport;
+
+    private static final class Histogram {
+        final long[] buckets = new long[BUCKET_LIMITS.length + 1];
+        long samples;
+        long stalls;
+        long totalMillis;
+        long maxMillis;
+
+        void record(long millis, boolean stall) {
+            int bucket = 0;
+            while (bucket < BUCKET_LIMITS.length && millis >= BUCKET_LIMITS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+            samples++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            if (stall) {
+                stalls++;
+            }
+        }
+    }
+
+    public EdtWatchdog(Logger logger, long intervalMillis, long stallThresholdMillis) {
+        this.logger = logger;
+        this.intervalMillis = intervalMillis;
+        this.stallThresholdMillis = stallThresholdMillis;
+        this.monitor = new Thread(this::run, "maillite-edt-watchdog");
+        this.monitor.setDaemon(true);
+    }
+
+    public void start() {
+        monitor.start();
+    }
+
+    public void stop() {
+        running = false;
+        monitor.interrupt();
+        logger.log("EDT watchdog stopped: " + getSummary());
+    }
+
+    // Called on the EDT when a user action starts; stalls within the next few
+    // seconds are charged to it.
+    public void markAction(String name) {
+        action = name;
+        actionStarted = System.currentTimeMillis();
+    }
+
+    public synchronized String getSummary() {
+        Histogram all = new Histogram();
+        for (Histogram histogram : histograms.values()) {
+            all.samples += histogram.samples;
+            all.totalMillis += histogram.totalMillis;
+            all.maxMillis = Math.max(all.maxMillis, histogram.maxMillis);
+        }
+        return String.format("heartbeats=%d avg=%.1fms max=%dms stalls=%d worst=%dms",
+                all.samples, all.samples > 0 ? (double) all.totalMillis / all.samples : 0.0,
+                all.maxMillis, stallCount, worstStall);
+    }
+
+    public synchronized String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("EDT heartbeat every ").append(intervalMillis).append("ms, stall threshold ")
+                .append(stallThresholdMillis).append("ms\n");
+        report.append(getSummary()).append("\n\n");
+
+        report.append(String.format("%-16s %8s %7s %7s %7s", "Action", "Samples", "Stalls", "Avg", "Max"));
+        for (int i = 0; i <= BUCKET_LIMITS.length; i++) {
+            report.append(String.format(" %7s", bucketLabel(i)));
+        }
+        report.append('\n');
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            report.append(String.format("%-16s %8d %7d %6.1fms %5dms", entry.getKey(), histogram.samples,
+                    histogram.stalls, (double) histogram.totalMillis / histogram.samples, histogram.maxMillis));
+            for (long count : histogram.buckets) {
+                report.append(String.format(" %7d", count));
+            }
+            report.append('\n');
+        }
+
+        if (lastStallReport != null) {
+            report.append("\nLast stall:\n").append(lastStallReport);
+        }
+        return report.toString();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                long posted = System.currentTimeMillis();
+                pendingSince = posted;
+                EventQueue.invokeLater(() -> {
+                    edt = Thread.currentThread();
+                    pendingSince = 0;
+                    record(actionDuring(posted), System.currentTimeMillis() - posted);
+                });
+
+                boolean reported = false;
+                while (running && pendingSince == posted) {
+                    Thread.sleep(Math.min(intervalMillis, stallThresholdMillis));
+                    long blocked = System.currentTimeMillis() - posted;
+                    if (!reported && pendingSince == posted && blocked >= stallThresholdMillis) {
+                        reportStall(actionDuring(posted), blocked);
+                        reported = true;
+                    }
+                }
+                Thread.sleep(intervalMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(String current, long latency) {
+        synchronized (this) {
+            histograms.computeIfAbsent(current, k -> new Histogram()).record(latency, latency >= stallThresholdMillis);
+            if (latency >= stallThresholdMillis) {
+                worstStall = Math.max(worstStall, latency);
+            }
+        }
+        if (latency >= stallThresholdMillis) {
+            logger.log("EDT stall ended after " + latency + "ms during '" + current + "'");
+        }
+    }
+
+    private void reportStall(String current, long blocked) {
+        Thread thread = edt;
+        StringBuilder trace = new StringBuilder();
+        trace.append("EDT blocked for ").append(blocked).append("ms+ during '").append(current).append("'\n");
+        if (thread != null) {
+            StackTraceElement[] stack = thread.getStackTrace();
+            for (int i = 0; i < Math.min(stack.length, STACK_DEPTH); i++) {
+                trace.append("    at ").append(stack[i]).append('\n');
+            }
+            if (stack.length > STACK_DEPTH) {
+                trace.append("    ... ").append(stack.length - STACK_DEPTH).append(" more\n");
+            }
+        }
+        synchronized (this) {
+            stallCount++;
+            lastStallReport = trace.toString();
+        }
+        logger.log(trace.toString().trim());
+    }
+
+    // The action that was running while the heartbeat waited: one marked
+    // during the wait, or shortly before it was posted. Read when the wait is
+    // observed, since the blocking action usually starts after the post.
+    private String actionDuring(long posted) {
+        String name = action;
+        long started = actionStarted;
+        return started >= posted - ACTION_WINDOW ? name : IDLE;
+    }
+
+    private static String bucketLabel(int bucket) {
+        return bucket < BUCKET_LIMITS.length ? "<" + BUCKET_LIMITS[bucket] : ">=" + BUCKET_LIMITS[bucket - 1];
+    }
+}
@@ -0,0 +1,179 @@
+package client.gui;
+
+import client.controller.ClientController;
+import client.gui.models.HeaderStore;
+import client.search.InvertedIndex;
+import client.search.MessageQuery;
+import client.utils.Config;
+
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Search-as-you-type for the message list. Keystrokes restart a debounce
+// timer; the query is then evaluated on the controller's I/O threads against
+// the HeaderStore currently shown, and only the newest search may deliver.
+// When the new query narrows the previous one over an unchanged store, only
+// the previous matches are re-checked.
+class LiveSearch {
+    static final class Result {
+        final MessageQuery query;
+        final HeaderStore headers;
+        final BitSet rows;
+        final Map<String, Double> scores;
+        final boolean narrowed;
+        final long micros;
+        // What the next narrowing query may start from: the query's own
+        // matches without ranked content hits, valid for this store version
+        // only, and only if no text term fell back to a header-only scan.
+        private final BitSet queryRows;
+        private final int version;
+        private final boolean exact;
+
+        Result(MessageQuery query, HeaderStore headers, BitSet rows, Map<String, Double> scores, boolean narrowed,
+               long micros, BitSet queryRows, int version, boolean exact) {
+            this.query = query;
+            this.headers = headers;
+            this.rows = rows;
+            this.scores = scores;
+            this.narrowed = narrowed;
+            this.micros = micros;
+            this.queryRows = queryRows;
+            this.version = version;
+            this.exact = exact;
+        }
+    }
+
+    private final ClientController controller;
+    private final JTextComponent field;
+    private final Supplier<HeaderStore> headers;
+    private final Supplier<String> serverFolder;
+    private final Consumer<Result> onResult;
+    private final Consumer<String> onError;
+    private final Timer debounce;
+    private int generation;
+
+    private MessageQuery lastQuery;
+    private HeaderStore lastHeaders;
+    private int lastVersion;
+    private BitSet lastRows;
+    private boolean lastExact;
+
+    LiveSearch(ClientController controller, JTextComponent field, Supplier<HeaderStore> headers,
+               Supplier<String> serverFolder, Consumer<Result> onResult, Consumer<String> onError) {
+        this.controller = controller;
+        this.field = field;
+        this.headers = headers;
+        this.serverFolder = serverFolder;
+        this.onResult = onResult;
+        this.onError = onError;
+        this.debounce = new Timer(Config.SEARCH_DEBOUNCE_DELAY, e -> search());
+        this.debounce.setRepeats(false);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { debounce.restart(); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { debounce.restart(); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) { }
+        });
+    }
+
+    void search() {
+        debounce.stop();
+        String text = field.getText().trim();
+        MessageQuery query;
+        try {
+            query = MessageQuery.parse(text);
+        } catch (IllegalArgumentException e) {
+            generation++;
+            onError.accept("Invalid search: " + e.getMessage());
+            return;
+        }
+
+        int current = ++generation;
+        if (query.isEmpty()) {
+            lastQuery = null;
+            onResult.accept(null);
+            return;
+        }
+
+        HeaderStore store = headers.get();
+        int version = store.getVersion();
+        BitSet within = lastExact && store == lastHeaders && version == lastVersion && query.narrows(lastQuery)
+                ? lastRows : null;
+        String folder = serverFolder.get();
+        boolean[] scanned = {false};
+
+        controller.runAsync("SEARCH " + text, () -> {
+            long start = System.nanoTime();
+            BitSet rows = query.evaluate(store, substring -> {
+                List<String> ids = controller.findSubstring(substring);
+                if (ids == null) {
+                    scanned[0] = true;
+                }
+                return ids;
+            }, within);
+            BitSet matches = (BitSet) rows.clone();
+
+            Map<String, Double> scores = new HashMap<>();
+            String freeText = query.getFreeText();
+            if (!freeText.isEmpty()) {
+                for (InvertedIndex.SearchHit hit : controller.searchMessages(freeText, folder,
+                        Config.SEARCH_RESULT_LIMIT)) {
+                    int row = store.rowOf(hit.getMessageId());
+                    if (row < 0) {
+                        continue;
+                    }
+                    if (query.isFreeTextOnly()) {
+                        matches.set(row);
+                    } else if (!rows.get(row)) {
+                        continue;
+                    }
+                    scores.put(hit.getMessageId(), hit.getScore());
+                }
+            }
+            return new Result(query, store, matches, scores, within != null, (System.nanoTime() - start) / 1000,
+                    rows, version, !scanned[0]);
+        }, result -> {
+            if (current == generation) {
+                lastQuery = result.query;
+                lastHeaders = result.headers;
+                lastVersion = result.version;
+                lastRows = result.queryRows;
+                lastExact = result.exact;
+                onResult.accept(result);
+            }
+        }, e -> {
+            if (current == generation) {
+                onError.accept("Search failed: " + e.getMessage());
+            }
+        });
+    }
+
+    // Re-runs the current query if the shown store changed since it was last
+    // evaluated, e.g. after a folder refresh or a folder switch.
+    void refresh() {
+        if (!field.getText().trim().isEmpty() && !debounce.isRunning()) {
+            HeaderStore store = headers.get();
+            if (store != lastHeaders || store.getVersion() != lastVersion) {
+                search();
+            }
+        }
+    }
+
+    void stop() {
+        debounce.stop();
+        generation++;
+    }
+}
@@ -0,0 +1,185 @@
+package client.gui;
+
+import client.controller.ClientController;
+import client.controller.FolderDelta;
+import client.gui.models.Message;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+// Sits between MainWindow and ClientController. Every call is made on the EDT
+// and returns immediately; network and disk work runs on the controller's I/O
+// threads and results come back on the EDT. Each view keeps its last-known
+// data, which is handed out (stale == true) while a fresh request is running,
+// and only the newest request per view may deliver.
+class MailDataLayer {
+    interface DataCallback<T> {
+        void onData(T data, boolean stale);
+    }
+
+    private static final String FOLDER_VIEW = "folder";
+    private static final String USERS_VIEW = "users";
+    private static final String STATS_VIEW = "stats";
+
+    private final ClientController controller;
+    private final Map<String, Integer> generations = new HashMap<>();
+    private final Map<String, List<Message>> knownFolders = new HashMap<>();
+    private List<String> knownUsers;
+    private String knownStats;
+
+    MailDataLayer(ClientController controller) {
+        this.controller = controller;
+    }
+
+    CompletableFuture<List<Message>> loadFolder(String serverFolder, DataCallback<List<Message>> onData,
+                                                Consumer<Throwable> onError) {
+        int generation = next(FOLDER_VIEW);
+        boolean[] fresh = {false};
+
+        List<Message> known = knownFolders.get(serverFolder);
+        if (known != null) {
+            onData.onData(known, true);
+        } else {
+            controller.runAsync("OFFLINE " + serverFolder,
+                    () -> controller.hasOfflineFolder(serverFolder) ? controller.getOfflineMessages(serverFolder) : null,
+                    offline -> {
+                        if (fresh[0] || !isCurrent(FOLDER_VIEW, generation)) {
+                            return;
+                        }
+                        if (offline != null) {
+                            onData.onData(offline, true);
+                        } else if (!controller.isConnected() && onError != null) {
+                            onError.accept(new IOException("Not connected to server"));
+                        }
+                    }, null);
+        }
+
+        if (!controller.isConnected()) {
+            CompletableFuture<List<Message>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("Not connected to server"));
+            return failed;
+        }
+
+        CompletableFuture<List<Message>> request = fetchFolder(serverFolder);
+        deliver(request, FOLDER_VIEW, generation, messages -> {
+            fresh[0] = true;
+            knownFolders.put(serverFolder, messages);
+            onData.onData(messages, false);
+        }, onError);
+        return request;
+    }
+
+    void syncFolder(String serverFolder, DataCallback<FolderDelta> onDelta) {
+        Integer generation = generations.get(FOLDER_VIEW);
+        int current = generation != null ? generation : 0;
+        deliver(controller.syncFolderAsync(serverFolder), FOLDER_VIEW, current, delta -> {
+            knownFolders.put(serverFolder, delta.getSnapshot());
+            onDelta.onData(delta, false);
+        }, null);
+    }
+
+    CompletableFuture<List<String>> loadOnlineUsers(DataCallback<List<String>> onData, Consumer<Throwable> onError) {
+        int generation = next(USERS_VIEW);
+        if (knownUsers != null) {
+            onData.onData(knownUsers, true);
+        }
+        CompletableFuture<List<String>> request = controller.getOnlineUsersAsync();
+        deliver(request, USERS_VIEW, generation, users -> {
+            knownUsers = users;
+            onData.onData(users, false);
+        }, onError);
+        return request;
+    }
+
+    CompletableFuture<String> loadStats(DataCallback<String> onData) {
+        int generation = next(STATS_VIEW);
+        if (knownStats != null) {
+            onData.onData(knownStats, true);
+        }
+        CompletableFuture<String> request = controller.getStatsAsync();
+        deliver(request, STATS_VIEW, generation, stats -> {
+            knownStats = stats;
+            onData.onData(stats, false);
+        }, null);
+        return request;
+    }
+
+    void moveMessage(String messageId, boolean archive, Consumer<Boolean> onDone, Consumer<Throwable> onError) {
+        controller.runAsync((archive ? "DELE " : "RESTORE ") + messageId,
+                () -> archive ? controller.archiveMessage(messageId) : controller.restoreMessage(messageId),
+                success -> {
+                    if (success) {
+                        forget(messageId);
+                    }
+                    onDone.accept(success);
+                }, onError);
+    }
+
+    void logout(Runnable onDone) {
+        for (String view : new ArrayList<>(generations.keySet())) {
+            next(view);
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                controller.logout();
+            } catch (RuntimeException e) {
+                System.out.println("Error during logout: " + e.getMessage());
+            }
+            if (onDone != null) {
+                SwingUtilities.invokeLater(onDone);
+            }
+        }, "maillite-logout");
+        worker.start();
+    }
+
+    private void forget(String messageId) {
+        for (Map.Entry<String, List<Message>> entry : knownFolders.entrySet()) {
+            List<Message> remaining = new ArrayList<>(entry.getValue());
+            if (remaining.removeIf(msg -> messageId.equals(msg.getId()))) {
+                entry.setValue(remaining);
+            }
+        }
+    }
+
+    private CompletableFuture<List<Message>> fetchFolder(String serverFolder) {
+        switch (serverFolder) {
+            case "SENT":
+                return controller.getSentMessagesAsync();
+            case "ARCHIVE":
+                return controller.getArchivedMessagesAsync();
+            default:
+                return controller.getInboxMessagesAsync();
+        }
+    }
+
+    private <T> void deliver(CompletableFuture<T> request, String view, int generation,
+                             Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        request.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (!isCurrent(view, generation)) {
+                return;
+            }
+            if (error == null) {
+                onSuccess.accept(result);
+            } else if (onError != null) {
+                onError.accept(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
+        }));
+    }
+
+    private int next(String view) {
+        return generations.merge(view, 1, Integer::sum);
+    }
+
+    private boolean isCurrent(String view, int generation) {
+        Integer current = generations.get(view);
+        return current == null ? generation == 0 : current == generation;
+    }
+}
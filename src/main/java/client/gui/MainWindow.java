@@ -6,14 +6,19 @@ import javax.swing.AbstractAction;
 import javax.swing.JComponent;
 import javax.swing.KeyStroke;
 import client.controller.ClientController;
+import client.gui.models.HeaderStore;
 import client.gui.models.Message;
+import client.gui.models.MessageBody;
+import client.gui.models.MessageTableModel;
+import client.storage.ReadStateJournal;
+import client.utils.Config;
 import client.utils.Logger;
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
 import javax.swing.*;
 import javax.swing.Timer;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableRowSorter;
 import javax.swing.text.JTextComponent;
@@ -22,6 +27,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 public class MainWindow extends JFrame {
     private ClientController controller;
@@ -45,14 +52,45 @@ public class MainWindow extends JFrame {
     private static final int AUTO_AWAY_TIMEOUT = 30000;
     private static final int STATUS_UPDATE_INTERVAL = 10000;
 
-    private final Set<String> readMessageIds = new HashSet<>();
+    private final MailDataLayer data;
+    private final EdtWatchdog watchdog;
+    private LiveSearch liveSearch;
+    private TableRowSorter<MessageTableModel> messageSorter;
+    private LiveSearch.Result searchResult;
+    private final RowFilter<MessageTableModel, Integer> searchFilter = new RowFilter<MessageTableModel, Integer>() {
+        @Override
+        public boolean include(Entry<? extends MessageTableModel, ? extends Integer> entry) {
+            LiveSearch.Result result = searchResult;
+            // Rows of a store the result was not computed for stay visible
+            // until the search re-runs against it.
+            if (result == null || result.headers != entry.getModel().getHeaders()) {
+                return true;
+            }
+            return result.rows.get(entry.getModel().getStoreRow(entry.getIdentifier()));
+        }
+    };
+    private boolean sessionClosed;
+    private int messageDisplayGeneration;
+    private String displayedMessageId;
+
+    private ReadStateJournal readState;
+    private final MessageTableModel messageModel = new MessageTableModel();
     private static final String READ_MESSAGES_FILE = "read_messages.dat";
+    private static final String READ_JOURNAL_FILE = "read_messages.journal";
 
     public MainWindow(ClientController controller) {
         this.controller = controller;
+        this.data = new MailDataLayer(controller);
         this.logger = new Logger();
+        this.watchdog = new EdtWatchdog(logger, Config.EDT_HEARTBEAT_INTERVAL, Config.EDT_STALL_THRESHOLD);
+        if (Config.EDT_WATCHDOG_ENABLED) {
+            watchdog.start();
+        }
         loadReadMessages();
         initializeGUI();
+        liveSearch = new LiveSearch(controller, searchField, messageModel::getHeaders,
+                () -> serverFolderName(folderList.getSelectedValue() != null ? folderList.getSelectedValue() : "Inbox"),
+                this::showSearchResult, statusLabel::setText);
         setupActivityTracking();
     }
 
@@ -154,40 +192,48 @@ public class MainWindow extends JFrame {
 
     private void setStatus(String status) {
         if (controller != null && controller.isConnected()) {
-            try {
+            controller.runAsync("SETSTAT", () -> {
                 controller.setStatus(status.toUpperCase());
+                return null;
+            }, result -> {
                 statusComboBox.setSelectedItem(status);
                 logger.log("Status changed to: " + status);
-            } catch (Exception e) {
-                logger.log("Error setting status: " + e.getMessage());
-            }
+            }, e -> logger.log("Error setting status: " + e.getMessage()));
         }
     }
 
-    @SuppressWarnings("unchecked")
     private void loadReadMessages() {
-        File file = new File(READ_MESSAGES_FILE);
-        if (!file.exists()) {
-            System.out.println("No read messages file found - starting fresh");
-            return;
+        try {
+            readState = ReadStateJournal.open(Paths.get(READ_JOURNAL_FILE), Paths.get(READ_MESSAGES_FILE));
+        } catch (IOException e) {
+            System.out.println("Failed to load read messages: " + e.getMessage());
         }
+    }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            Set<String> loaded = (Set<String>) ois.readObject();
-            readMessageIds.clear();
-            readMessageIds.addAll(loaded);
-            System.out.println("Loaded " + readMessageIds.size() + " read messages from disk");
-        } catch (Exception e) {
-            System.out.println("Failed to load read messages: " + e.getMessage());
+    private boolean isMarkedRead(String messageId) {
+        return readState != null && readState.isRead(messageId);
+    }
+
+    private boolean recordRead(String messageId) {
+        if (readState == null) {
+            return true;
+        }
+        try {
+            return readState.markRead(messageId);
+        } catch (IOException e) {
+            System.err.println("Failed to save read state: " + e.getMessage());
+            return true;
         }
     }
 
-    private void saveReadMessages() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(READ_MESSAGES_FILE))) {
-            oos.writeObject(readMessageIds);
-            System.out.println("Saved " + readMessageIds.size() + " read messages to disk");
+    private void closeReadMessages() {
+        if (readState == null) {
+            return;
+        }
+        try {
+            readState.close();
         } catch (IOException e) {
-            System.err.println("Failed to save read messages: " + e.getMessage());
+            System.err.println("Failed to close read-state journal: " + e.getMessage());
         }
     }
 
@@ -214,6 +260,9 @@ public class MainWindow extends JFrame {
         JMenuItem refreshItem = new JMenuItem("Refresh");
         refreshItem.addActionListener(e -> refreshAllData());
         viewMenu.add(refreshItem);
+        JMenuItem responsivenessItem = new JMenuItem("Responsiveness...");
+        responsivenessItem.addActionListener(e -> showResponsivenessReport());
+        viewMenu.add(responsivenessItem);
 
         menuBar.add(fileMenu);
         menuBar.add(viewMenu);
@@ -264,20 +313,11 @@ public class MainWindow extends JFrame {
 
         onlineUsersList = new JList<>(new DefaultListModel<>());
 
-        String[] columnNames = {"From", "Subject", "Date", "Status", "ID"};
-
-        DefaultTableModel tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-
-        messagesTable = new JTable(tableModel);
+        messagesTable = new JTable(messageModel);
         messagesTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         messagesTable.getTableHeader().setReorderingAllowed(false);
 
-        TableColumn idColumn = messagesTable.getColumnModel().getColumn(4);
+        TableColumn idColumn = messagesTable.getColumnModel().getColumn(MessageTableModel.COLUMN_ID);
         idColumn.setMinWidth(0);
         idColumn.setMaxWidth(0);
         idColumn.setPreferredWidth(0);
@@ -291,6 +331,7 @@ public class MainWindow extends JFrame {
 
         searchField = new JTextField(20);
         searchField.setToolTipText("Search messages...");
+        searchField.addActionListener(e -> searchMessages());
 
         toField = new JTextField();
         toField.setToolTipText("Enter single recipient or multiple separated by commas (user1,user2,user3)");
@@ -339,6 +380,9 @@ public class MainWindow extends JFrame {
         JMenuItem refreshItem = new JMenuItem("Refresh");
         refreshItem.addActionListener(e -> refreshAllData());
         viewMenu.add(refreshItem);
+        JMenuItem responsivenessItem = new JMenuItem("Responsiveness...");
+        responsivenessItem.addActionListener(e -> showResponsivenessReport());
+        viewMenu.add(responsivenessItem);
 
         menuBar.add(fileMenu);
         menuBar.add(viewMenu);
@@ -537,13 +581,18 @@ public class MainWindow extends JFrame {
         folderList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 String selectedFolder = folderList.getSelectedValue();
+                watchdog.markAction("folder switch");
+                if (controller != null) {
+                    controller.clearPrefetch();
+                }
                 logger.log("Folder selected: " + selectedFolder);
                 loadCurrentFolderMessages();
             }
         });
 
         messagesTable.getSelectionModel().addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting() && messagesTable.getSelectedRow() != -1) {
+            if (!e.getValueIsAdjusting() && messagesTable.getSelectedRow() != -1
+                    && !Objects.equals(getSelectedMessageId(), displayedMessageId)) {
                 displaySelectedMessage();
             }
         });
@@ -552,10 +601,14 @@ public class MainWindow extends JFrame {
             String selectedStatus = (String) statusComboBox.getSelectedItem();
             if (selectedStatus != null) {
                 String status = selectedStatus.replaceAll("[^\\w]", "").toUpperCase();
-                controller.setStatus(status);
-                logger.log("Status changed to: " + status);
-                loadOnlineUsers();
-                updateStatusBar();
+                controller.runAsync("SETSTAT", () -> {
+                    controller.setStatus(status);
+                    return null;
+                }, result -> {
+                    logger.log("Status changed to: " + status);
+                    loadOnlineUsers();
+                    updateStatusBar();
+                }, null);
             }
         });
 
@@ -599,48 +652,53 @@ public class MainWindow extends JFrame {
             return;
         }
 
-        try {
-            List<String> responses = controller.getOnlineUsers();
+        if (onlineUsersList.getModel().getSize() == 0) {
             DefaultListModel<String> model = new DefaultListModel<>();
+            model.addElement("Loading...");
+            onlineUsersList.setModel(model);
+        }
+        data.loadOnlineUsers((users, stale) -> showOnlineUsers(users),
+                e -> {
+                    DefaultListModel<String> model = new DefaultListModel<>();
+                    model.addElement("Error: " + e.getMessage());
+                    onlineUsersList.setModel(model);
+                });
+    }
 
-            if (responses == null || responses.isEmpty()) {
-                model.addElement("No response from server");
-            } else {
-                for (String line : responses) {
-                    line = line.trim();
-                    if (line.isEmpty()) continue;
-
-                    String[] parts = line.split("\\s+");
-                    if (parts.length >= 2) {
-                        String username = parts[0];
-                        String status = parts[1].toUpperCase();
-
-                        String statusText = switch (status) {
-                            case "ACTIVE" -> "Active";
-                            case "BUSY"   -> "Busy";
-                            case "AWAY"   -> "Away";
-                            default       -> "Unknown";
-                        };
-
-                        model.addElement(statusText + " " + username);
-                    } else if (parts.length == 1 && !parts[0].startsWith("212")) {
-                        model.addElement("Active " + parts[0]);
-                    }
-                }
+    private void showOnlineUsers(List<String> responses) {
+        DefaultListModel<String> model = new DefaultListModel<>();
 
-                if (model.isEmpty()) {
-                    model.addElement("No users online");
+        if (responses == null || responses.isEmpty()) {
+            model.addElement("No response from server");
+        } else {
+            for (String line : responses) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+
+                String[] parts = line.split("\\s+");
+                if (parts.length >= 2) {
+                    String username = parts[0];
+                    String status = parts[1].toUpperCase();
+
+                    String statusText = switch (status) {
+                        case "ACTIVE" -> "Active";
+                        case "BUSY"   -> "Busy";
+                        case "AWAY"   -> "Away";
+                        default       -> "Unknown";
+                    };
+
+                    model.addElement(statusText + " " + username);
+                } else if (parts.length == 1 && !parts[0].startsWith("212")) {
+                    model.addElement("Active " + parts[0]);
                 }
             }
 
-            onlineUsersList.setModel(model);
-
-        } catch (Exception e) {
-            DefaultListModel<String> model = new DefaultListModel<>();
-            model.addElement("Error: " + e.getMessage());
-            onlineUsersList.setModel(model);
-            e.printStackTrace();
+            if (model.isEmpty()) {
+                model.addElement("No users online");
+            }
         }
+
+        onlineUsersList.setModel(model);
     }
 
     private void loadCurrentFolderMessages() {
@@ -649,51 +707,88 @@ public class MainWindow extends JFrame {
         String selectedFolder = folderList.getSelectedValue();
         if (selectedFolder == null) return;
 
-        try {
-            List<Message> messages = new ArrayList<>();
-
-            switch (selectedFolder) {
-                case "Inbox":
-                    messages = controller.getInboxMessages();
-                    break;
-                case "Sent":
-                    messages = controller.getSentMessages();
-                    break;
-                case "Archive":
-                    messages = controller.getArchivedMessages();
-                    break;
-            }
+        String serverFolder = serverFolderName(selectedFolder);
+        if (!selectedFolder.equals(messageModel.getHeaders().getFolder())) {
+            displayedMessageId = null;
+            messageModel.setHeaders(new HeaderStore(selectedFolder));
+        }
+        statusLabel.setText("Loading " + selectedFolder + "...");
 
+        data.loadFolder(serverFolder, (messages, stale) -> {
             updateMessagesTable(messages);
-            logger.log("Loaded " + messages.size() + " messages from " + selectedFolder);
+            if (stale) {
+                statusLabel.setText("Showing last-known " + selectedFolder + " (" + messages.size() + " messages)"
+                        + (controller.isConnected() ? " - refreshing..." : " - server unreachable"));
+            } else {
+                logger.log("Loaded " + messages.size() + " messages from " + selectedFolder);
+                updateStatusBar();
+            }
+        }, error -> {
+            logger.log("ERROR loading messages: " + error.getMessage());
+            if (messageModel.getRowCount() == 0) {
+                statusLabel.setText("Could not load " + selectedFolder + ": " + error.getMessage());
+                if (controller.isConnected()) {
+                    JOptionPane.showMessageDialog(this, "Failed to load messages", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            } else {
+                statusLabel.setText("Showing last-known " + selectedFolder + " - refresh failed");
+            }
+        });
+    }
 
-        } catch (Exception e) {
-            logger.log("ERROR loading messages: " + e.getMessage());
-            JOptionPane.showMessageDialog(this, "Failed to load messages", "Error", JOptionPane.ERROR_MESSAGE);
+    private void syncCurrentFolder() {
+        String selectedFolder = folderList.getSelectedValue();
+        if (selectedFolder == null) return;
+
+        data.syncFolder(serverFolderName(selectedFolder), (delta, stale) -> {
+            if (delta.isEmpty()) {
+                return;
+            }
+            logger.log("Synced " + selectedFolder + ": " + delta.getAdded().size() + " added, "
+                    + delta.getRemoved().size() + " removed, " + delta.getChanged().size() + " changed");
+            updateMessagesTable(delta.getSnapshot());
+        });
+    }
+
+    private String serverFolderName(String folder) {
+        switch (folder) {
+            case "Sent":
+                return "SENT";
+            case "Archive":
+                return "ARCHIVE";
+            default:
+                return "INBOX";
+        }
+    }
+
+    private List<Message> fetchFolderMessages(String folder) {
+        switch (folder) {
+            case "Inbox":
+                return controller.getInboxMessages();
+            case "Sent":
+                return controller.getSentMessages();
+            case "Archive":
+                return controller.getArchivedMessages();
+            default:
+                return new ArrayList<>();
         }
     }
 
     private void displaySelectedMessage() {
         int selectedRow = messagesTable.getSelectedRow();
         if (selectedRow != -1 && controller != null) {
+            watchdog.markAction("message open");
             try {
                 int modelRow = messagesTable.convertRowIndexToModel(selectedRow);
-                DefaultTableModel model = (DefaultTableModel) messagesTable.getModel();
 
-                String from = (String) model.getValueAt(modelRow, 0);
-                String subject = (String) model.getValueAt(modelRow, 1);
-                String messageId = (String) model.getValueAt(modelRow, 4);
+                String from = messageModel.getFrom(modelRow);
+                String subject = messageModel.getSubject(modelRow);
+                String messageId = messageModel.getMessageId(modelRow);
 
                 System.out.println("Displaying message - From: " + from + ", Subject: " + subject + ", ID: " + messageId);
 
-                Message selectedMessage = controller.getMessage(messageId);
-
-                if (selectedMessage != null) {
-                    displayActualMessageContent(selectedMessage);
-                } else {
-                    messageContentArea.setText("From: " + from + "\nSubject: " + subject +
-                            "\n\nCould not load message content from server.");
-                }
+                streamMessageContent(messageId, from, subject);
+                prefetchNeighbours(selectedRow);
 
             } catch (Exception e) {
                 System.out.println("Error displaying message: " + e.getMessage());
@@ -702,54 +797,173 @@ public class MainWindow extends JFrame {
         }
     }
 
+    private void streamMessageContent(String messageId, String from, String subject) {
+        final int generation = ++messageDisplayGeneration;
+        displayedMessageId = messageId;
+        final Message header = new Message();
+        header.setId(messageId);
+        final long[] bodyChars = {0};
+
+        messageContentArea.setText("Loading message...");
+
+        controller.runAsync("RETR " + messageId, () -> {
+            controller.streamMessage(messageId, new ClientController.MessageStreamListener() {
+                @Override
+                public void onHeader(String name, String value) {
+                    ClientController.applyHeader(header, name, value);
+                }
+
+                @Override
+                public void onBodyStart() {
+                    String headerText = formatMessageHeader(header);
+                    SwingUtilities.invokeLater(() -> {
+                        if (generation == messageDisplayGeneration) {
+                            messageContentArea.setText(headerText);
+                            messageContentArea.setCaretPosition(0);
+                        }
+                    });
+                }
+
+                @Override
+                public void onBodyChunk(String chunk) {
+                    long shown = bodyChars[0];
+                    bodyChars[0] += chunk.length();
+                    if (shown >= Config.BODY_PREVIEW_LIMIT) {
+                        return;
+                    }
+
+                    String visible = shown + chunk.length() > Config.BODY_PREVIEW_LIMIT
+                            ? chunk.substring(0, (int) (Config.BODY_PREVIEW_LIMIT - shown))
+                            : chunk;
+                    SwingUtilities.invokeLater(() -> {
+                        if (generation == messageDisplayGeneration) {
+                            messageContentArea.append(visible);
+                        }
+                    });
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            return header;
+        }, msg -> {
+            if (generation != messageDisplayGeneration) {
+                return;
+            }
+            if (bodyChars[0] == 0) {
+                messageContentArea.append("(No message content)");
+            } else if (bodyChars[0] > Config.BODY_PREVIEW_LIMIT) {
+                messageContentArea.append("\n\n[... " + (bodyChars[0] - Config.BODY_PREVIEW_LIMIT)
+                        + " more characters not shown. Use Export to save the full message.]");
+            }
+            markMessageRead(msg);
+        }, e -> {
+            if (generation == messageDisplayGeneration) {
+                messageContentArea.setText("From: " + from + "\nSubject: " + subject +
+                        "\n\nCould not load message content from server.");
+            }
+        });
+    }
+
+    private void prefetchNeighbours(int viewRow) {
+        List<String> neighbours = new ArrayList<>();
+        for (int offset = 1; offset <= Config.PREFETCH_RADIUS; offset++) {
+            for (int row : new int[]{viewRow + offset, viewRow - offset}) {
+                if (row >= 0 && row < messagesTable.getRowCount()) {
+                    neighbours.add(messageModel.getMessageId(messagesTable.convertRowIndexToModel(row)));
+                }
+            }
+        }
+        controller.prefetchAdjacent(neighbours);
+    }
+
+    private String getSelectedMessageId() {
+        int viewRow = messagesTable.getSelectedRow();
+        if (viewRow == -1) {
+            return null;
+        }
+        int modelRow = messagesTable.convertRowIndexToModel(viewRow);
+        return messageModel.getMessageId(modelRow);
+    }
+
     private void updateMessagesTable(List<Message> messages) {
-        DefaultTableModel model = (DefaultTableModel) messagesTable.getModel();
-        model.setRowCount(0);
+        String folder = folderList.getSelectedValue() != null ? folderList.getSelectedValue() : "Inbox";
+        Predicate<Message> isShownRead = msg -> isMarkedRead(msg.getId()) || msg.isRead();
+
+        if (folder.equals(messageModel.getHeaders().getFolder()) && messageModel.getRowCount() > 0) {
+            refreshMessagesTable(messages, isShownRead);
+        } else {
+            displayedMessageId = null;
+            messageModel.setHeaders(MessageTableModel.toHeaders(folder, messages, isShownRead));
+        }
+        liveSearch.refresh();
 
         if (messages.isEmpty()) {
             messageContentArea.setText("No messages in this folder.");
             return;
         }
-
+        List<String> unreadIds = new ArrayList<>();
         for (Message msg : messages) {
-            boolean isMessageRead = readMessageIds.contains(msg.getId()) || msg.isRead();
-
-            String statusText = isMessageRead ? "Seen" : "New";
-            String dateStr = new SimpleDateFormat("MMM dd, HH:mm").format(new Date(msg.getTimestamp()));
-            String from = msg.getFrom() != null ? msg.getFrom() : "Unknown";
-            String subject = msg.getSubject() != null ? msg.getSubject() : "No Subject";
-
-            model.addRow(new Object[]{
-                    from,
-                    subject,
-                    dateStr,
-                    statusText,
-                    msg.getId()
-            });
+            if (!isShownRead.test(msg)) {
+                unreadIds.add(msg.getId());
+            }
         }
+        controller.prefetchUnread(unreadIds);
     }
 
-    private void displayActualMessageContent(Message msg) {
-        if (msg == null) {
-            messageContentArea.setText("Error: Message is null");
+    private void refreshMessagesTable(List<Message> messages, Predicate<Message> isShownRead) {
+        String selectedId = getSelectedMessageId();
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, messagesTable);
+        String anchorId = null;
+        int anchorOffset = 0;
+        if (viewport != null) {
+            int viewRow = messagesTable.rowAtPoint(viewport.getViewPosition());
+            if (viewRow >= 0) {
+                anchorId = messageModel.getMessageId(messagesTable.convertRowIndexToModel(viewRow));
+                anchorOffset = viewport.getViewPosition().y - messagesTable.getCellRect(viewRow, 0, true).y;
+            }
+        }
+
+        if (!messageModel.update(messages, isShownRead)) {
             return;
         }
 
-        boolean wasNew = !readMessageIds.contains(msg.getId());
-        readMessageIds.add(msg.getId());
-        saveReadMessages();
+        if (selectedId != null && !selectedId.equals(getSelectedMessageId())) {
+            int modelRow = messageModel.findRow(selectedId);
+            int viewRow = modelRow >= 0 ? messagesTable.convertRowIndexToView(modelRow) : -1;
+            if (viewRow >= 0) {
+                messagesTable.getSelectionModel().setSelectionInterval(viewRow, viewRow);
+            }
+        }
+        if (anchorId != null) {
+            int modelRow = messageModel.findRow(anchorId);
+            int viewRow = modelRow >= 0 ? messagesTable.convertRowIndexToView(modelRow) : -1;
+            if (viewRow >= 0) {
+                int y = messagesTable.getCellRect(viewRow, 0, true).y + anchorOffset;
+                viewport.setViewPosition(new Point(viewport.getViewPosition().x, Math.max(0, y)));
+            }
+        }
+    }
+
+    private void markMessageRead(Message msg) {
+        boolean wasNew = recordRead(msg.getId());
 
         if (wasNew) {
-            new Thread(() -> {
-                try {
-                    controller.markMessageAsRead(msg.getId());
-                    System.out.println("Marked message as read on server: " + msg.getId());
-                } catch (Exception ex) {
-                    System.out.println("Failed to mark message as read on server: " + ex.getMessage());
-                }
-            }).start();
+            controller.runAsync("MARK " + msg.getId(), () -> {
+                controller.markMessageAsRead(msg.getId());
+                return null;
+            }, result -> System.out.println("Marked message as read on server: " + msg.getId()),
+                    ex -> System.out.println("Failed to mark message as read on server: " + ex.getMessage()));
+        }
+
+        int modelRow = messageModel.findRow(msg.getId());
+        if (modelRow != -1) {
+            messageModel.setRead(modelRow, true);
         }
+    }
 
+    private String formatMessageHeader(Message msg) {
         StringBuilder content = new StringBuilder();
         content.append("════════════════════════════════════\n");
         content.append("                MESSAGE DETAILS                \n");
@@ -763,42 +977,16 @@ public class MainWindow extends JFrame {
         content.append("════════════════════════════════════\n");
         content.append("                  MESSAGE BODY                  \n");
         content.append("════════════════════════════════════\n\n");
-
-        String body = msg.getBody();
-        content.append(body == null || body.isEmpty() ? "(No message content)" : body);
-
-        messageContentArea.setText(content.toString());
-        messageContentArea.setCaretPosition(0);
-
-        int viewRow = messagesTable.getSelectedRow();
-        if (viewRow != -1) {
-            int modelRow = messagesTable.convertRowIndexToModel(viewRow);
-            DefaultTableModel model = (DefaultTableModel) messagesTable.getModel();
-            model.setValueAt("Seen", modelRow, 3);
-            messagesTable.repaint();
-        }
+        return content.toString();
     }
 
-    private List<Message> getCurrentFolderMessages() {
-        String selectedFolder = folderList.getSelectedValue();
+    private List<Message> getFolderMessages(String selectedFolder) {
         if (selectedFolder == null) return new ArrayList<>();
 
         System.out.println("Getting messages for folder: " + selectedFolder);
 
         try {
-            List<Message> messages = new ArrayList<>();
-
-            switch (selectedFolder) {
-                case "Inbox":
-                    messages = controller.getInboxMessages();
-                    break;
-                case "Sent":
-                    messages = controller.getSentMessages();
-                    break;
-                case "Archive":
-                    messages = controller.getArchivedMessages();
-                    break;
-            }
+            List<Message> messages = fetchFolderMessages(selectedFolder);
 
             System.out.println("Retrieved " + messages.size() + " messages from controller");
             return messages;
@@ -810,6 +998,7 @@ public class MainWindow extends JFrame {
     }
 
     private void archiveSelectedMessage() {
+        watchdog.markAction("archive");
         int viewRow = messagesTable.getSelectedRow();
         if (viewRow == -1) {
             JOptionPane.showMessageDialog(this, "Please select a message first", "Warning", JOptionPane.WARNING_MESSAGE);
@@ -818,14 +1007,13 @@ public class MainWindow extends JFrame {
 
         try {
             int modelRow = messagesTable.convertRowIndexToModel(viewRow);
-            DefaultTableModel model = (DefaultTableModel) messagesTable.getModel();
 
-            if (modelRow < 0 || modelRow >= model.getRowCount()) {
+            if (modelRow < 0 || modelRow >= messageModel.getRowCount()) {
                 JOptionPane.showMessageDialog(this, "Invalid message selection", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            String messageId = (String) model.getValueAt(modelRow, 4);
+            String messageId = messageModel.getMessageId(modelRow);
 
             if (messageId == null || messageId.trim().isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Cannot archive: Message ID is missing", "Error", JOptionPane.ERROR_MESSAGE);
@@ -840,27 +1028,36 @@ public class MainWindow extends JFrame {
                 return;
             }
 
-            boolean success = controller.archiveMessage(messageId.trim());
-
-            if (success) {
-                model.removeRow(modelRow);
-                messageContentArea.setText("Message archived successfully");
+            final String targetId = messageId.trim();
+            data.moveMessage(targetId, true, success -> {
+                if (success) {
+                    int row = messageModel.findRow(targetId);
+                    if (row != -1) {
+                        messageModel.removeRow(row);
+                    }
+                    messageContentArea.setText("Message archived successfully");
 
-                if (folderList.getSelectedValue() != null &&
-                        folderList.getSelectedValue().equals("Inbox")) {
-                    loadCurrentFolderMessages();
-                }
+                    if (folderList.getSelectedValue() != null &&
+                            folderList.getSelectedValue().equals("Inbox")) {
+                        loadCurrentFolderMessages();
+                    }
 
-                JOptionPane.showMessageDialog(this,
-                        "Message archived successfully",
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
+                    JOptionPane.showMessageDialog(this,
+                            "Message archived successfully",
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
 
-                logger.log("Message archived: " + messageId);
-            } else {
+                    logger.log("Message archived: " + messageId);
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                            "Failed to archive message. Please try again.",
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                logger.log("ERROR archiving message: " + ex.getMessage());
                 JOptionPane.showMessageDialog(this,
-                        "Failed to archive message. Please try again.",
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                        "Error: " + ex.getMessage(),
+                        "Failed", JOptionPane.ERROR_MESSAGE);
+            });
 
         } catch (ArrayIndexOutOfBoundsException e) {
             logger.log("ERROR: Array index out of bounds in archive: " + e.getMessage());
@@ -876,6 +1073,7 @@ public class MainWindow extends JFrame {
     }
 
     private void restoreSelectedMessage() {
+        watchdog.markAction("restore");
         int viewRow = messagesTable.getSelectedRow();
         if (viewRow == -1) {
             JOptionPane.showMessageDialog(this, "Please select a message first", "Warning", JOptionPane.WARNING_MESSAGE);
@@ -884,14 +1082,13 @@ public class MainWindow extends JFrame {
 
         try {
             int modelRow = messagesTable.convertRowIndexToModel(viewRow);
-            DefaultTableModel model = (DefaultTableModel) messagesTable.getModel();
 
-            if (modelRow < 0 || modelRow >= model.getRowCount()) {
+            if (modelRow < 0 || modelRow >= messageModel.getRowCount()) {
                 JOptionPane.showMessageDialog(this, "Invalid message selection", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            String messageId = (String) model.getValueAt(modelRow, 4);
+            String messageId = messageModel.getMessageId(modelRow);
 
             if (messageId == null || messageId.trim().isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Cannot restore: Message ID is missing", "Error", JOptionPane.ERROR_MESSAGE);
@@ -906,27 +1103,36 @@ public class MainWindow extends JFrame {
                 return;
             }
 
-            boolean success = controller.restoreMessage(messageId.trim());
-
-            if (success) {
-                model.removeRow(modelRow);
-                messageContentArea.setText("Message restored to inbox successfully");
+            final String targetId = messageId.trim();
+            data.moveMessage(targetId, false, success -> {
+                if (success) {
+                    int row = messageModel.findRow(targetId);
+                    if (row != -1) {
+                        messageModel.removeRow(row);
+                    }
+                    messageContentArea.setText("Message restored to inbox successfully");
 
-                if (folderList.getSelectedValue() != null &&
-                        folderList.getSelectedValue().equals("Archive")) {
-                    loadCurrentFolderMessages();
-                }
+                    if (folderList.getSelectedValue() != null &&
+                            folderList.getSelectedValue().equals("Archive")) {
+                        loadCurrentFolderMessages();
+                    }
 
-                JOptionPane.showMessageDialog(this,
-                        "Message restored successfully",
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
+                    JOptionPane.showMessageDialog(this,
+                            "Message restored successfully",
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
 
-                logger.log("Message restored: " + messageId);
-            } else {
+                    logger.log("Message restored: " + messageId);
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                            "Failed to restore message. Please try again.",
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, ex -> {
+                logger.log("ERROR restoring message: " + ex.getMessage());
                 JOptionPane.showMessageDialog(this,
-                        "Failed to restore message. Please try again.",
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                        "Error: " + ex.getMessage(),
+                        "Failed", JOptionPane.ERROR_MESSAGE);
+            });
 
         } catch (ArrayIndexOutOfBoundsException e) {
             logger.log("ERROR: Array index out of bounds in restore: " + e.getMessage());
@@ -941,6 +1147,7 @@ public class MainWindow extends JFrame {
         }
     }
     private void refreshAllData() {
+        watchdog.markAction("refresh");
         if (controller == null || !controller.isConnected()) {
             JOptionPane.showMessageDialog(this, "Not connected to server!", "Error", JOptionPane.ERROR_MESSAGE);
             return;
@@ -950,15 +1157,29 @@ public class MainWindow extends JFrame {
 
         JOptionPane.showMessageDialog(this, "Force refreshing data from server...", "Refreshing", JOptionPane.INFORMATION_MESSAGE);
 
-        loadOnlineUsers();
-        loadCurrentFolderMessages();
-        updateStatusBar();
+        String selectedFolder = folderList.getSelectedValue() != null ? folderList.getSelectedValue() : "Inbox";
 
-        JOptionPane.showMessageDialog(this,
-                "Data force refreshed successfully!\n" +
-                        "All messages should now be up-to-date.",
-                "Refresh Complete",
-                JOptionPane.INFORMATION_MESSAGE);
+        CompletableFuture<List<String>> users = data.loadOnlineUsers((list, stale) -> showOnlineUsers(list), null);
+        CompletableFuture<String> stats = data.loadStats((text, stale) -> showStats(text));
+        CompletableFuture<List<Message>> messages = data.loadFolder(serverFolderName(selectedFolder),
+                (list, stale) -> updateMessagesTable(list), null);
+
+        CompletableFuture.allOf(users, stats, messages).whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                logger.log("ERROR during refresh: " + cause.getMessage());
+                JOptionPane.showMessageDialog(this,
+                        "Refresh failed: " + cause.getMessage(),
+                        "Refresh Failed", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            JOptionPane.showMessageDialog(this,
+                    "Data force refreshed successfully!\n" +
+                            "All messages should now be up-to-date.",
+                    "Refresh Complete",
+                    JOptionPane.INFORMATION_MESSAGE);
+        }));
     }
 
     private void autoRefreshData() {
@@ -967,50 +1188,59 @@ public class MainWindow extends JFrame {
                     folderList.getSelectedValue() != null &&
                     folderList.getSelectedValue().contains("Inbox")) {
 
-                loadCurrentFolderMessages();
+                syncCurrentFolder();
             }
         });
         autoRefreshTimer.start();
     }
 
     private void searchMessages() {
-        String searchText = searchField.getText().trim().toLowerCase();
-        if (!searchText.isEmpty()) {
-            logger.log("Searching for: " + searchText);
-
-            TableRowSorter<DefaultTableModel> sorter =
-                    new TableRowSorter<>((DefaultTableModel) messagesTable.getModel());
-            messagesTable.setRowSorter(sorter);
-
-            RowFilter<DefaultTableModel, Object> rowFilter = new RowFilter<DefaultTableModel, Object>() {
-                @Override
-                public boolean include(Entry<? extends DefaultTableModel, ? extends Object> entry) {
-                    String sender = entry.getStringValue(0).toLowerCase();
-                    String subject = entry.getStringValue(1).toLowerCase();
-
-                    return sender.contains(searchText) || subject.contains(searchText);
-                }
-            };
-
-            sorter.setRowFilter(rowFilter);
+        watchdog.markAction("search");
+        liveSearch.search();
+    }
 
-            int resultCount = messagesTable.getRowCount();
-            if (resultCount > 0) {
-                statusLabel.setText("Search found " + resultCount + " messages");
-            } else {
-                statusLabel.setText("No messages found matching: " + searchText);
+    // Swaps a finished background search into the table in one step: the
+    // filter only consults the result's row bits, so nothing is re-matched
+    // or lower-cased per row here.
+    private void showSearchResult(LiveSearch.Result result) {
+        if (messageSorter == null) {
+            if (result == null) {
+                updateStatusBar();
+                return;
             }
+            messageSorter = new TableRowSorter<>(messageModel);
+            messagesTable.setRowSorter(messageSorter);
+        }
 
-        } else {
-            TableRowSorter<DefaultTableModel> sorter =
-                    new TableRowSorter<>((DefaultTableModel) messagesTable.getModel());
-            messagesTable.setRowSorter(sorter);
-            sorter.setRowFilter(null);
+        searchResult = result;
+        if (result != null && !result.scores.isEmpty()) {
+            Map<String, Double> scores = result.scores;
+            messageSorter.setComparator(MessageTableModel.COLUMN_ID,
+                    Comparator.comparingDouble((String id) -> -scores.getOrDefault(id, 0.0)));
+            messageSorter.setSortKeys(List.of(new RowSorter.SortKey(MessageTableModel.COLUMN_ID, SortOrder.ASCENDING)));
+        } else if (!messageSorter.getSortKeys().isEmpty()
+                && messageSorter.getSortKeys().get(0).getColumn() == MessageTableModel.COLUMN_ID) {
+            messageSorter.setSortKeys(null);
+        }
+        messageSorter.setRowFilter(searchFilter);
+
+        if (result == null) {
             updateStatusBar();
+            return;
+        }
+        logger.log("Searching for: " + result.query.getSource() + " -> " + result.query
+                + " (" + result.micros + "us" + (result.narrowed ? ", narrowed" : "") + ")");
+        int resultCount = messagesTable.getRowCount();
+        if (resultCount > 0) {
+            statusLabel.setText("Search found " + resultCount + " messages"
+                    + (result.scores.isEmpty() ? "" : " (" + result.scores.size() + " by content, ranked)"));
+        } else {
+            statusLabel.setText("No messages found matching: " + result.query.getSource());
         }
     }
 
     private void sendMessage() {
+        watchdog.markAction("send");
         if (sendButton == null) {
             System.err.println("sendButton is null! Check initialization.");
             return;
@@ -1047,50 +1277,55 @@ public class MainWindow extends JFrame {
 
         resetActivityTimers();
 
-        new Thread(() -> {
-            try {
-                System.out.println("Starting message send process...");
-                controller.sendMessage(to, subject, body);
-
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(MainWindow.this,
-                            "Message sent successfully!\nTo: " + to + "\nSubject: " + subject,
-                            "Success", JOptionPane.INFORMATION_MESSAGE);
-
-                    toField.setText("");
-                    subjectField.setText("");
-                    composeArea.setText("");
-
-                    System.out.println("Auto-refreshing after send...");
-                    loadCurrentFolderMessages();
-                });
+        controller.runAsync("SEND", () -> {
+            System.out.println("Starting message send process...");
+            controller.sendMessage(to, subject, body);
+            return null;
+        }, result -> {
+            JOptionPane.showMessageDialog(MainWindow.this,
+                    "Message sent successfully!\nTo: " + to + "\nSubject: " + subject,
+                    "Success", JOptionPane.INFORMATION_MESSAGE);
+
+            toField.setText("");
+            subjectField.setText("");
+            composeArea.setText("");
+
+            System.out.println("Auto-refreshing after send...");
+            loadCurrentFolderMessages();
+            resetSendButton();
+        }, e -> {
+            String errorMessage = e.getMessage();
+            if (errorMessage != null && errorMessage.contains("Not connected")) {
+                errorMessage = "Connection Lost!\n\n" +
+                        "Please:\n" +
+                        "1. Check if server is running\n" +
+                        "2. Logout and login again\n" +
+                        "3. Make sure port 1234 is available";
+            }
 
-            } catch (Exception e) {
-                SwingUtilities.invokeLater(() -> {
-                    String errorMessage = e.getMessage();
-                    if (errorMessage.contains("Not connected")) {
-                        errorMessage = "Connection Lost!\n\n" +
-                                "Please:\n" +
-                                "1. Check if server is running\n" +
-                                "2. Logout and login again\n" +
-                                "3. Make sure port 1234 is available";
-                    }
+            JOptionPane.showMessageDialog(MainWindow.this,
+                    errorMessage,
+                    "Send Failed", JOptionPane.ERROR_MESSAGE);
+            resetSendButton();
+        });
+    }
 
-                    JOptionPane.showMessageDialog(MainWindow.this,
-                            errorMessage,
-                            "Send Failed", JOptionPane.ERROR_MESSAGE);
-                });
-            } finally {
-                SwingUtilities.invokeLater(() -> {
-                    if (sendButton != null) {
-                        sendButton.setEnabled(true);
-                        sendButton.setText("Send Message");
-                    }
-                });
-            }
-        }).start();
+    private void resetSendButton() {
+        if (sendButton != null) {
+            sendButton.setEnabled(true);
+            sendButton.setText("Send Message");
+        }
+    }
+    private void showResponsivenessReport() {
+        JTextArea reportArea = new JTextArea(watchdog.getReport(), 20, 110);
+        reportArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        reportArea.setEditable(false);
+        JOptionPane.showMessageDialog(this, new JScrollPane(reportArea), "Responsiveness",
+                JOptionPane.INFORMATION_MESSAGE);
     }
+
     private void exportConversation() {
+        watchdog.markAction("export");
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Export Conversation");
 
@@ -1126,9 +1361,7 @@ public class MainWindow extends JFrame {
 
             final File exportFileFinal = finalExportFile;
 
-            new Thread(() -> {
-                performExport(exportFileFinal, folder, searchText);
-            }).start();
+            controller.runAsync("EXPORT " + folder, () -> performExport(exportFileFinal, folder, searchText));
         }
     }
     private void performExport(File file, String folder, String searchText) {
@@ -1158,42 +1391,59 @@ public class MainWindow extends JFrame {
             writer.newLine();
             writer.newLine();
 
-            List<Message> messages = getCurrentFolderMessages();
+            List<Message> messages = getFolderMessages(folder);
             int exportedCount = 0;
 
-            for (Message msg : messages) {
-                if (msg != null && msg.getId() != null) {
-                    writer.write("-".repeat(60));
-                    writer.newLine();
-                    writer.write("Message ID    : " + msg.getId());
-                    writer.newLine();
-                    writer.write("From          : " + (msg.getFrom() != null ? msg.getFrom() : "Unknown"));
-                    writer.newLine();
-                    writer.write("To            : " + (msg.getTo() != null ? msg.getTo() : controller.getUsername()));
-                    writer.newLine();
-                    writer.write("Subject       : " + (msg.getSubject() != null ? msg.getSubject() : "No Subject"));
-                    writer.newLine();
-                    writer.write("Date          : " + new Date(msg.getTimestamp()));
-                    writer.newLine();
-                    writer.newLine();
-
-                    // Body
-                    writer.write("Body:");
-                    writer.newLine();
-                    String body = "(No content available)";
-                    try {
-                        Message fullMessage = controller.getMessage(msg.getId());
-                        if (fullMessage != null && fullMessage.getBody() != null) {
-                            body = fullMessage.getBody();
-                        }
-                    } catch (Exception e) {
-                        body = "(Error loading message content)";
+            int batchSize = Config.PIPELINE_DEPTH;
+            for (int start = 0; start < messages.size(); start += batchSize) {
+                List<Message> batch = messages.subList(start, Math.min(start + batchSize, messages.size()));
+
+                List<String> batchIds = new ArrayList<>();
+                for (Message msg : batch) {
+                    if (msg != null && msg.getId() != null) {
+                        batchIds.add(msg.getId());
                     }
-                    writer.write(body);
-                    writer.newLine();
-                    writer.newLine();
+                }
 
-                    exportedCount++;
+                Map<String, Message> fullMessages;
+                try {
+                    fullMessages = controller.getMessages(batchIds);
+                } catch (Exception e) {
+                    fullMessages = Collections.emptyMap();
+                }
+
+                for (Message msg : batch) {
+                    if (msg != null && msg.getId() != null) {
+                        writer.write("-".repeat(60));
+                        writer.newLine();
+                        writer.write("Message ID    : " + msg.getId());
+                        writer.newLine();
+                        writer.write("From          : " + (msg.getFrom() != null ? msg.getFrom() : "Unknown"));
+                        writer.newLine();
+                        writer.write("To            : " + (msg.getTo() != null ? msg.getTo() : controller.getUsername()));
+                        writer.newLine();
+                        writer.write("Subject       : " + (msg.getSubject() != null ? msg.getSubject() : "No Subject"));
+                        writer.newLine();
+                        writer.write("Date          : " + new Date(msg.getTimestamp()));
+                        writer.newLine();
+                        writer.newLine();
+
+                        // Body
+                        writer.write("Body:");
+                        writer.newLine();
+                        Message fullMessage = fullMessages.get(msg.getId());
+                        if (fullMessage != null) {
+                            MessageBody body = fullMessage.getBodyHandle();
+                            body.writeTo(writer);
+                            body.release();
+                        } else {
+                            writer.write("(No content available)");
+                        }
+                        writer.newLine();
+                        writer.newLine();
+
+                        exportedCount++;
+                    }
                 }
             }
 
@@ -1226,25 +1476,17 @@ public class MainWindow extends JFrame {
         int confirm = JOptionPane.showConfirmDialog(this,
                 "Are you sure you want to logout?", "Confirm Logout", JOptionPane.YES_NO_OPTION);
 
-        if (confirm == JOptionPane.YES_OPTION) {
+        if (confirm == JOptionPane.YES_OPTION && confirmDiscardDraft()) {
             logger.log("User logging out");
 
-            saveReadMessages();
-
-            if (controller != null) {
-                try {
-                    if (controller.isConnected()) {
-                        controller.getTcpClient().sendCommand("QUIT");
-                    }
-                    controller.logout();
-                } catch (Exception e) {
-                    logger.log("Error during logout: " + e.getMessage());
-                }
-            }
-
-            dispose();
+            closeReadMessages();
+            stopTimers();
+            statusLabel.setText("Logging out...");
+            setEnabled(false);
+            sessionClosed = true;
 
-            SwingUtilities.invokeLater(() -> {
+            data.logout(() -> {
+                dispose();
                 new client.gui.LoginWindow().setVisible(true);
             });
         }
@@ -1252,19 +1494,20 @@ public class MainWindow extends JFrame {
 
     private void updateStatusBar() {
         if (statusComboBox != null && statusLabel != null) {
-            int messageCount = messagesTable.getRowCount();
-            String status = controller.getStats();
-
-            String statusText = String.format(
-                    "User: %s | Messages: %d | %s",
-                    controller.getUsername(),
-                    messageCount,
-                    status
-            );
-            statusLabel.setText(statusText);
+            data.loadStats((status, stale) -> showStats(status));
         }
     }
 
+    private void showStats(String status) {
+        String statusText = String.format(
+                "User: %s | Messages: %d | %s",
+                controller.getUsername(),
+                messagesTable.getRowCount(),
+                status
+        );
+        statusLabel.setText(statusText);
+    }
+
     private void setupTableColors() {
         messagesTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
             @Override
@@ -1276,8 +1519,8 @@ public class MainWindow extends JFrame {
 
                 try {
                     int modelRow = table.convertRowIndexToModel(row);
-                    String sender = (String) table.getModel().getValueAt(modelRow, 0);
-                    String status = (String) table.getModel().getValueAt(modelRow, 3);
+                    String sender = messageModel.getFrom(modelRow);
+                    String status = messageModel.isRead(modelRow) ? "Seen" : "New";
                     String currentUser = controller.getUsername();
 
                     if (isSelected) {
@@ -1319,8 +1562,7 @@ public class MainWindow extends JFrame {
         });
     }
 
-    @Override
-    public void dispose() {
+    private void stopTimers() {
         if (autoAwayTimer != null) {
             autoAwayTimer.stop();
         }
@@ -1330,20 +1572,36 @@ public class MainWindow extends JFrame {
         if (statusUpdateTimer != null) {
             statusUpdateTimer.stop();
         }
+        if (liveSearch != null) {
+            liveSearch.stop();
+        }
+    }
 
-        saveReadMessages();
+    // Asked before any teardown, so cancelling leaves the window fully usable.
+    private boolean confirmDiscardDraft() {
+        if (composeArea.getText().trim().isEmpty()) {
+            return true;
+        }
+        int result = JOptionPane.showConfirmDialog(this,
+                "You have an unsent message. Are you sure you want to exit?",
+                "Confirm Exit", JOptionPane.YES_NO_OPTION);
+        return result == JOptionPane.YES_OPTION;
+    }
 
-        if (!composeArea.getText().trim().isEmpty()) {
-            int result = JOptionPane.showConfirmDialog(this,
-                    "You have an unsent message. Are you sure you want to exit?",
-                    "Confirm Exit", JOptionPane.YES_NO_OPTION);
-            if (result != JOptionPane.YES_OPTION) {
-                return;
-            }
+    @Override
+    public void dispose() {
+        // logout() has already asked before closing the session.
+        if (!sessionClosed && !confirmDiscardDraft()) {
+            return;
         }
 
-        if (controller != null) {
-            controller.logout();
+        stopTimers();
+        watchdog.stop();
+        closeReadMessages();
+
+        if (controller != null && !sessionClosed) {
+            sessionClosed = true;
+            data.logout(null);
         }
 
         super.dispose();
@@ -0,0 +1,400 @@
+package client.gui.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+public class HeaderStore {
+    private final String folder;
+
+    private String[] ids;
+    private int[] senders;
+    private int[] recipients;
+    private String[] subjects;
+    private String[] subjectKeys;
+    private long[] timestamps;
+    private long[] sizes;
+    private final BitSet read = new BitSet();
+    private final BitSet archived = new BitSet();
+    private int rowCount;
+    private int version;
+
+    private final Dictionary senderDictionary = new Dictionary();
+    private final Dictionary recipientDictionary = new Dictionary();
+    private int[] idSlots;
+
+    public HeaderStore(String folder) {
+        this(folder, 256);
+    }
+
+    public HeaderStore(String folder, int expectedRows) {
+        this.folder = folder;
+        int capacity = Math.max(16, expectedRows);
+        ids = new String[capacity];
+        senders = new int[capacity];
+        recipients = new int[capacity];
+        subjects = new String[capacity];
+        subjectKeys = new String[capacity];
+        timestamps = new long[capacity];
+        sizes = new long[capacity];
+        idSlots = newSlots(capacity);
+    }
+
+    public static HeaderStore fromMessages(String folder, List<Message> messages) {
+        HeaderStore store = new HeaderStore(folder, messages.size());
+        for (Message msg : messages) {
+            store.add(msg.getId(), msg.getFrom(), msg.getTo(), msg.getSubject(), msg.getTimestamp(), msg.getSize(),
+                    msg.isRead(), msg.isArchived());
+        }
+        return store;
+    }
+
+    public int add(String id, CharSequence from, CharSequence to, String subject,
+                   long timestamp, long size, boolean isRead, boolean isArchived) {
+        return add(id, from, 0, from != null ? from.length() : 0, to, subject, timestamp, size, isRead, isArchived);
+    }
+
+    public synchronized int add(String id, CharSequence from, int fromStart, int fromEnd, CharSequence to,
+                                String subject, long timestamp, long size, boolean isRead, boolean isArchived) {
+        int existing = rowOf(id);
+        if (existing >= 0) {
+            throw new IllegalArgumentException("Duplicate message ID in " + folder + ": " + id);
+        }
+        if (rowCount == ids.length) {
+            grow(ids.length * 2);
+        }
+
+        int row = rowCount++;
+        ids[row] = id;
+        senders[row] = from != null ? senderDictionary.code(from, fromStart, fromEnd) : -1;
+        recipients[row] = to != null ? recipientDictionary.code(to, 0, to.length()) : -1;
+        subjects[row] = subject;
+        timestamps[row] = timestamp;
+        sizes[row] = size;
+        read.set(row, isRead);
+        archived.set(row, isArchived);
+        insertSlot(idSlots, id, row);
+        version++;
+        return row;
+    }
+
+    public synchronized boolean update(int row, CharSequence from, CharSequence to, String subject,
+                                       long timestamp, long size) {
+        check(row);
+        int sender = from != null ? senderDictionary.code(from, 0, from.length()) : -1;
+        int recipient = to != null ? recipientDictionary.code(to, 0, to.length()) : -1;
+        if (senders[row] == sender && recipients[row] == recipient && Objects.equals(subjects[row], subject)
+                && timestamps[row] == timestamp && sizes[row] == size) {
+            return false;
+        }
+        senders[row] = sender;
+        recipients[row] = recipient;
+        subjects[row] = subject;
+        subjectKeys[row] = null;
+        timestamps[row] = timestamp;
+        sizes[row] = size;
+        version++;
+        return true;
+    }
+
+    public String getFolder() { return folder; }
+
+    public synchronized int size() { return rowCount; }
+
+    public synchronized int rowOf(String id) {
+        if (id == null) {
+            return -1;
+        }
+        int mask = idSlots.length - 1;
+        for (int slot = spread(id.hashCode()) & mask; idSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int row = idSlots[slot] - 1;
+            if (ids[row].equals(id)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized String getId(int row) { return ids[check(row)]; }
+    public synchronized String getFrom(int row) { return senderDictionary.value(senders[check(row)]); }
+    public synchronized int getSenderCode(int row) { return senders[check(row)]; }
+    public synchronized String getTo(int row) { return recipientDictionary.value(recipients[check(row)]); }
+    public synchronized String getSubject(int row) { return subjects[check(row)]; }
+    public synchronized long getTimestamp(int row) { return timestamps[check(row)]; }
+    public synchronized long getSize(int row) { return sizes[check(row)]; }
+    public synchronized boolean isRead(int row) { return read.get(check(row)); }
+    public synchronized boolean isArchived(int row) { return archived.get(check(row)); }
+
+    public synchronized void setRead(int row, boolean value) {
+        if (read.get(check(row)) != value) {
+            read.set(row, value);
+            version++;
+        }
+    }
+
+    public synchronized void setArchived(int row, boolean value) {
+        if (archived.get(check(row)) != value) {
+            archived.set(row, value);
+            version++;
+        }
+    }
+
+    // Bumped by every change that can alter which rows a query matches.
+    public synchronized int getVersion() { return version; }
+
+    // Lower-cased search keys, computed once per value and kept until it changes.
+    public synchronized String getSubjectKey(int row) {
+        if (subjectKeys[check(row)] == null && subjects[row] != null) {
+            subjectKeys[row] = subjects[row].toLowerCase(Locale.ROOT);
+        }
+        return subjectKeys[row];
+    }
+
+    public synchronized String getFromKey(int row) { return senderDictionary.key(senders[check(row)]); }
+    public synchronized String getSenderKey(int code) { return senderDictionary.key(code); }
+    public synchronized String getRecipientKey(int code) { return recipientDictionary.key(code); }
+
+    public synchronized int getSenderCount() { return senderDictionary.size(); }
+    public synchronized String getSender(int code) { return senderDictionary.value(code); }
+    public synchronized int senderCodeOf(String sender) { return senderDictionary.find(sender); }
+
+    public synchronized BitSet getReadBits() { return (BitSet) read.clone(); }
+    public synchronized BitSet getArchivedBits() { return (BitSet) archived.clone(); }
+
+    public synchronized BitSet rowsFrom(int senderCode) {
+        BitSet rows = new BitSet(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            if (senders[row] == senderCode) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    public synchronized int getRecipientCount() { return recipientDictionary.size(); }
+    public synchronized String getRecipient(int code) { return recipientDictionary.value(code); }
+
+    public synchronized BitSet rowsFrom(BitSet senderCodes) {
+        return rowsWithCode(senders, senderCodes);
+    }
+
+    public synchronized BitSet rowsTo(BitSet recipientCodes) {
+        return rowsWithCode(recipients, recipientCodes);
+    }
+
+    public synchronized BitSet rowsWithTimestamp(long from, long until) {
+        return rowsInRange(timestamps, from, until);
+    }
+
+    public synchronized BitSet rowsWithSize(long from, long until) {
+        return rowsInRange(sizes, from, until);
+    }
+
+    public synchronized long[] getTimestamps() { return Arrays.copyOf(timestamps, rowCount); }
+    public synchronized long[] getSizes() { return Arrays.copyOf(sizes, rowCount); }
+
+    public synchronized Message toMessage(int row) {
+        check(row);
+        Message msg = new Message(ids[row], senderDictionary.value(senders[row]), recipientDictionary.value(recipients[row]),
+                subjects[row], "", timestamps[row]);
+        msg.setSize(sizes[row]);
+        msg.setRead(read.get(row));
+        msg.setArchived(archived.get(row));
+        return msg;
+    }
+
+    public synchronized List<Message> toMessages() {
+        List<Message> messages = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            messages.add(toMessage(row));
+        }
+        return messages;
+    }
+
+    public synchronized long estimateBytes() {
+        long bytes = 4L * ids.length * 4 + 8L * ids.length * 2 + 4L * idSlots.length
+                + read.size() / 8 + archived.size() / 8;
+        for (int row = 0; row < rowCount; row++) {
+            bytes += 40 + 2L * ids[row].length();
+            if (subjects[row] != null) {
+                bytes += 40 + 2L * subjects[row].length();
+            }
+        }
+        return bytes + senderDictionary.estimateBytes() + recipientDictionary.estimateBytes();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("HeaderStore{folder='%s', rows=%d, senders=%d, recipients=%d}",
+                folder, rowCount, senderDictionary.size(), recipientDictionary.size());
+    }
+
+    private BitSet rowsWithCode(int[] column, BitSet codes) {
+        BitSet rows = new BitSet(rowCount);
+        if (codes.isEmpty()) {
+            return rows;
+        }
+        for (int row = 0; row < rowCount; row++) {
+            int code = column[row];
+            if (code >= 0 && codes.get(code)) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    private BitSet rowsInRange(long[] column, long from, long until) {
+        BitSet rows = new BitSet(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            long value = column[row];
+            if (value >= from && value < until) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    private int check(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range for " + rowCount + " rows");
+        }
+        return row;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        senders = Arrays.copyOf(senders, capacity);
+        recipients = Arrays.copyOf(recipients, capacity);
+        subjects = Arrays.copyOf(subjects, capacity);
+        subjectKeys = Arrays.copyOf(subjectKeys, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+
+        idSlots = newSlots(capacity);
+        for (int row = 0; row < rowCount; row++) {
+            insertSlot(idSlots, ids[row], row);
+        }
+    }
+
+    private static int[] newSlots(int capacity) {
+        return new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+    }
+
+    private static void insertSlot(int[] slots, String id, int row) {
+        int mask = slots.length - 1;
+        int slot = spread(id.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = row + 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Dictionary {
+        private String[] values = new String[16];
+        private String[] keys = new String[16];
+        private int[] slots = new int[32];
+        private int size;
+
+        int code(CharSequence text, int start, int end) {
+            int hash = spread(hash(text, start, end));
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                String candidate = values[slots[slot] - 1];
+                if (regionEquals(candidate, text, start, end)) {
+                    return slots[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            values[size] = text.subSequence(start, end).toString();
+            slots[slot] = ++size;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return size - 1;
+        }
+
+        int find(String text) {
+            if (text == null) {
+                return -1;
+            }
+            int mask = slots.length - 1;
+            for (int slot = spread(text.hashCode()) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                if (values[slots[slot] - 1].equals(text)) {
+                    return slots[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        String value(int code) {
+            return code >= 0 ? values[code] : null;
+        }
+
+        String key(int code) {
+            if (code < 0) {
+                return null;
+            }
+            if (keys[code] == null) {
+                keys[code] = values[code].toLowerCase(Locale.ROOT);
+            }
+            return keys[code];
+        }
+
+        int size() {
+            return size;
+        }
+
+        long estimateBytes() {
+            long bytes = 4L * slots.length + 4L * values.length;
+            for (int i = 0; i < size; i++) {
+                bytes += 40 + 2L * values[i].length();
+            }
+            return bytes;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int code = 0; code < size; code++) {
+                int slot = spread(values[code].hashCode()) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = code + 1;
+            }
+        }
+
+        private static int hash(CharSequence text, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            return h;
+        }
+
+        private static boolean regionEquals(String candidate, CharSequence text, int start, int end) {
+            if (candidate.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < candidate.length(); i++) {
+                if (candidate.charAt(i) != text.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
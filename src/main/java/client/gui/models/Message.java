@@ -1,5 +1,7 @@
 package client.gui.models;
 
+import client.utils.Config;
+
 import java.io.Serializable;
 
 public class Message implements Serializable {
@@ -10,7 +12,9 @@ public class Message implements Serializable {
     private String to;
     private String subject;
     private String body;
+    private transient MessageBody bodyHandle;
     private long timestamp;
+    private long size;
     private boolean isRead;
     private boolean isArchived;
 
@@ -39,12 +43,34 @@ public class Message implements Serializable {
     public String getSubject() { return subject; }
     public void setSubject(String subject) { this.subject = subject; }
 
-    public String getBody() { return body; }
-    public void setBody(String body) { this.body = body; }
+    // A spilled body is never decoded back onto the heap here; callers get a
+    // bounded preview and must use getBodyHandle() for the full text.
+    public String getBody() {
+        if (body == null && bodyHandle != null) {
+            return bodyHandle.isSpilled() ? bodyHandle.preview(Config.BODY_PREVIEW_LIMIT) : bodyHandle.asString();
+        }
+        return body;
+    }
+    public void setBody(String body) {
+        this.body = body;
+        this.bodyHandle = null;
+    }
+
+    public MessageBody getBodyHandle() {
+        return bodyHandle != null ? bodyHandle : MessageBody.of(body);
+    }
+    public void setBodyHandle(MessageBody bodyHandle) {
+        this.bodyHandle = bodyHandle;
+        this.body = null;
+    }
+    public boolean hasSpilledBody() { return bodyHandle != null && bodyHandle.isSpilled(); }
 
     public long getTimestamp() { return timestamp; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
 
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
     public boolean isRead() { return isRead; }
     public void setRead(boolean read) { isRead = read; }
 
@@ -0,0 +1,45 @@
+package client.gui.models;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public interface MessageBody {
+    long length();
+
+    boolean isSpilled();
+
+    String preview(int maxChars);
+
+    void writeTo(Writer writer) throws IOException;
+
+    String asString();
+
+    void release();
+
+    static MessageBody of(String text) {
+        final String value = text != null ? text : "";
+        return new MessageBody() {
+            @Override
+            public long length() { return value.length(); }
+
+            @Override
+            public boolean isSpilled() { return false; }
+
+            @Override
+            public String preview(int maxChars) {
+                return value.length() <= maxChars ? value : value.substring(0, maxChars);
+            }
+
+            @Override
+            public void writeTo(Writer writer) throws IOException {
+                writer.write(value);
+            }
+
+            @Override
+            public String asString() { return value; }
+
+            @Override
+            public void release() {}
+        };
+    }
+}
@@ -0,0 +1,288 @@
+package client.gui.models;
+
+import javax.swing.table.AbstractTableModel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+public class MessageTableModel extends AbstractTableModel {
+    public static final int COLUMN_FROM = 0;
+    public static final int COLUMN_SUBJECT = 1;
+    public static final int COLUMN_DATE = 2;
+    public static final int COLUMN_STATUS = 3;
+    public static final int COLUMN_ID = 4;
+
+    private static final String[] COLUMN_NAMES = {"From", "Subject", "Date", "Status", "ID"};
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, HH:mm");
+    private HeaderStore headers = new HeaderStore("Inbox");
+    private int[] storeRows = new int[0];
+    private int rowCount;
+    private int[] modelRows;
+    private String[] dates = new String[0];
+    private long lastMinute = Long.MIN_VALUE;
+    private String lastDate;
+
+    public void setHeaders(HeaderStore headers) {
+        this.headers = headers;
+        rowCount = headers.size();
+        storeRows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            storeRows[row] = row;
+        }
+        modelRows = null;
+        dates = new String[rowCount];
+        fireTableDataChanged();
+    }
+
+    // Brings the rows in line with a fresh folder listing using row-level
+    // insert/delete/update events, so the sorter, selection and viewport are
+    // left alone. Returns false, without firing anything, when nothing changed.
+    public boolean update(List<Message> snapshot, Predicate<Message> isRead) {
+        Map<String, Integer> position = new HashMap<>(snapshot.size() * 2);
+        for (int i = 0; i < snapshot.size(); i++) {
+            position.putIfAbsent(snapshot.get(i).getId(), i);
+        }
+        if (!keepsOrder(position) || headers.size() - rowCount > Math.max(1024, snapshot.size())) {
+            setHeaders(toHeaders(headers.getFolder(), snapshot, isRead));
+            return true;
+        }
+
+        boolean changed = false;
+        for (int row = rowCount - 1; row >= 0; row--) {
+            if (position.containsKey(getMessageId(row))) {
+                continue;
+            }
+            int end = row;
+            while (row > 0 && !position.containsKey(getMessageId(row - 1))) {
+                row--;
+            }
+            System.arraycopy(storeRows, end + 1, storeRows, row, rowCount - end - 1);
+            rowCount -= end - row + 1;
+            modelRows = null;
+            fireTableRowsDeleted(row, end);
+            changed = true;
+        }
+
+        int row = 0;
+        for (int i = 0; i < snapshot.size(); ) {
+            Message msg = snapshot.get(i);
+            if (position.get(msg.getId()) != i) {
+                i++;
+                continue;
+            }
+            if (row < rowCount && msg.getId().equals(getMessageId(row))) {
+                if (apply(storeRows[row], msg, isRead.test(msg))) {
+                    fireTableRowsUpdated(row, row);
+                    changed = true;
+                }
+                row++;
+                i++;
+                continue;
+            }
+
+            int first = row;
+            int[] block = new int[snapshot.size() - i];
+            int count = 0;
+            for (; i < snapshot.size(); i++) {
+                msg = snapshot.get(i);
+                if (position.get(msg.getId()) != i) {
+                    continue;
+                }
+                if (row < rowCount && msg.getId().equals(getMessageId(row))) {
+                    break;
+                }
+                block[count++] = storeRowFor(msg, isRead.test(msg));
+            }
+            insert(first, block, count);
+            fireTableRowsInserted(first, first + count - 1);
+            row = first + count;
+            changed = true;
+        }
+        return changed;
+    }
+
+    public static HeaderStore toHeaders(String folder, List<Message> messages, Predicate<Message> isRead) {
+        HeaderStore store = new HeaderStore(folder, messages.size());
+        for (Message msg : messages) {
+            if (store.rowOf(msg.getId()) < 0) {
+                store.add(msg.getId(), msg.getFrom(), msg.getTo(), msg.getSubject(), msg.getTimestamp(),
+                        msg.getSize(), isRead.test(msg), msg.isArchived());
+            }
+        }
+        return store;
+    }
+
+    public HeaderStore getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case COLUMN_FROM: return getFrom(row);
+            case COLUMN_SUBJECT: return getSubject(row);
+            case COLUMN_DATE: return getDate(row);
+            case COLUMN_STATUS: return isRead(row) ? "Seen" : "New";
+            case COLUMN_ID: return getMessageId(row);
+            default: throw new IndexOutOfBoundsException("Column " + column);
+        }
+    }
+
+    public int getStoreRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range for " + rowCount + " rows");
+        }
+        return storeRows[row];
+    }
+
+    public String getMessageId(int row) {
+        return headers.getId(getStoreRow(row));
+    }
+
+    public String getFrom(int row) {
+        String from = headers.getFrom(getStoreRow(row));
+        return from != null ? from : "Unknown";
+    }
+
+    public String getSubject(int row) {
+        String subject = headers.getSubject(getStoreRow(row));
+        return subject != null ? subject : "No Subject";
+    }
+
+    public boolean isRead(int row) {
+        return headers.isRead(getStoreRow(row));
+    }
+
+    public void setRead(int row, boolean read) {
+        headers.setRead(getStoreRow(row), read);
+        fireTableCellUpdated(row, COLUMN_STATUS);
+    }
+
+    public Message toMessage(int row) {
+        return headers.toMessage(getStoreRow(row));
+    }
+
+    public int findRow(String messageId) {
+        int storeRow = headers.rowOf(messageId);
+        if (storeRow < 0) {
+            return -1;
+        }
+        if (modelRows == null) {
+            modelRows = new int[headers.size()];
+            Arrays.fill(modelRows, -1);
+            for (int row = 0; row < rowCount; row++) {
+                modelRows[storeRows[row]] = row;
+            }
+        }
+        return storeRow < modelRows.length ? modelRows[storeRow] : -1;
+    }
+
+    public void removeRow(int row) {
+        getStoreRow(row);
+        System.arraycopy(storeRows, row + 1, storeRows, row, rowCount - row - 1);
+        rowCount--;
+        modelRows = null;
+        fireTableRowsDeleted(row, row);
+    }
+
+    private boolean keepsOrder(Map<String, Integer> position) {
+        int last = -1;
+        for (int row = 0; row < rowCount; row++) {
+            Integer index = position.get(getMessageId(row));
+            if (index != null) {
+                if (index < last) {
+                    return false;
+                }
+                last = index;
+            }
+        }
+        return true;
+    }
+
+    private boolean apply(int storeRow, Message msg, boolean read) {
+        boolean changed = headers.update(storeRow, msg.getFrom(), msg.getTo(), msg.getSubject(),
+                msg.getTimestamp(), msg.getSize());
+        if (changed) {
+            dates[storeRow] = null;
+        }
+        if (headers.isRead(storeRow) != read) {
+            headers.setRead(storeRow, read);
+            changed = true;
+        }
+        if (headers.isArchived(storeRow) != msg.isArchived()) {
+            headers.setArchived(storeRow, msg.isArchived());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private int storeRowFor(Message msg, boolean read) {
+        int storeRow = headers.rowOf(msg.getId());
+        if (storeRow >= 0) {
+            apply(storeRow, msg, read);
+            return storeRow;
+        }
+        storeRow = headers.add(msg.getId(), msg.getFrom(), msg.getTo(), msg.getSubject(), msg.getTimestamp(),
+                msg.getSize(), read, msg.isArchived());
+        if (storeRow >= dates.length) {
+            dates = Arrays.copyOf(dates, Math.max(16, storeRow * 2));
+        }
+        return storeRow;
+    }
+
+    private void insert(int row, int[] block, int count) {
+        if (rowCount + count > storeRows.length) {
+            storeRows = Arrays.copyOf(storeRows, Math.max(rowCount + count, storeRows.length * 2));
+        }
+        System.arraycopy(storeRows, row, storeRows, row + count, rowCount - row);
+        System.arraycopy(block, 0, storeRows, row, count);
+        rowCount += count;
+        modelRows = null;
+    }
+
+    private String getDate(int row) {
+        int storeRow = getStoreRow(row);
+        String date = dates[storeRow];
+        if (date == null) {
+            long timestamp = headers.getTimestamp(storeRow);
+            long minute = Math.floorDiv(timestamp, 60_000L);
+            if (minute != lastMinute) {
+                lastMinute = minute;
+                lastDate = dateFormat.format(new Date(timestamp));
+            }
+            date = lastDate;
+            dates[storeRow] = date;
+        }
+        return date;
+    }
+}
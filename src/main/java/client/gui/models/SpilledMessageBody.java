@@ -0,0 +1,153 @@
+package client.gui.models;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads go through a FileChannel opened per call rather than a long-lived
+// mapping: a mapped file cannot be deleted on Windows until the buffer is
+// collected, which would leave release() unable to remove it.
+public class SpilledMessageBody implements MessageBody {
+    private static final int DECODE_CHUNK = 8192;
+    private static final int MAX_BYTES_PER_CHAR = 4;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Path file;
+    private final long byteLength;
+    private Cleaner.Cleanable cleanable;
+    private int readers;
+    private boolean released;
+
+    private SpilledMessageBody(Path file, long byteLength) {
+        this.file = file;
+        this.byteLength = byteLength;
+    }
+
+    public static SpilledMessageBody of(Path file, long byteLength) {
+        SpilledMessageBody body = new SpilledMessageBody(file, byteLength);
+        // Handles that are dropped without release() still remove their file
+        // once unreachable, instead of piling up until the JVM exits.
+        body.cleanable = CLEANER.register(body, () -> delete(file));
+        return body;
+    }
+
+    @Override
+    public long length() { return byteLength; }
+
+    @Override
+    public boolean isSpilled() { return true; }
+
+    @Override
+    public String preview(int maxChars) {
+        openReader();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer bytes = read(channel, (long) maxChars * MAX_BYTES_PER_CHAR);
+            CharBuffer out = CharBuffer.allocate((int) Math.min(maxChars, byteLength));
+            newDecoder().decode(bytes, out, bytes.limit() == byteLength);
+            out.flip();
+            return out.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read message body " + file, e);
+        } finally {
+            closeReader();
+        }
+    }
+
+    @Override
+    public void writeTo(Writer writer) throws IOException {
+        openReader();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CharsetDecoder decoder = newDecoder();
+            ByteBuffer source = ByteBuffer.allocateDirect(DECODE_CHUNK);
+            CharBuffer chunk = CharBuffer.allocate(DECODE_CHUNK);
+
+            while (true) {
+                boolean endOfInput = channel.read(source) < 0;
+                source.flip();
+                decoder.decode(source, chunk, endOfInput);
+                if (endOfInput) {
+                    decoder.flush(chunk);
+                }
+                source.compact();
+                chunk.flip();
+                writer.append(chunk);
+                chunk.clear();
+                if (endOfInput) {
+                    return;
+                }
+            }
+        } finally {
+            closeReader();
+        }
+    }
+
+    @Override
+    public String asString() {
+        openReader();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return newDecoder().decode(read(channel, byteLength)).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read message body " + file, e);
+        } finally {
+            closeReader();
+        }
+    }
+
+    // The file is deleted once released and no reader still has it open.
+    @Override
+    public void release() {
+        synchronized (this) {
+            if (released) return;
+            released = true;
+            if (readers > 0) return;
+        }
+        cleanable.clean();
+    }
+
+    private synchronized void openReader() {
+        if (released) {
+            throw new IllegalStateException("Message body has been released: " + file);
+        }
+        readers++;
+    }
+
+    private void closeReader() {
+        synchronized (this) {
+            if (--readers > 0 || !released) return;
+        }
+        cleanable.clean();
+    }
+
+    private ByteBuffer read(FileChannel channel, long limit) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(limit, byteLength));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) break;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete spilled body " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+}
@@ -0,0 +1,35 @@
+package client.network;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+class LineDecoder {
+    private byte[] pending = new byte[256];
+    private int length;
+
+    void decode(ByteBuffer input, Consumer<String> lineConsumer) {
+        while (input.hasRemaining()) {
+            byte b = input.get();
+            if (b == '\n') {
+                int end = length;
+                if (end > 0 && pending[end - 1] == '\r') {
+                    end--;
+                }
+                lineConsumer.accept(new String(pending, 0, end, StandardCharsets.UTF_8));
+                length = 0;
+            } else {
+                if (length == pending.length) {
+                    byte[] grown = new byte[pending.length * 2];
+                    System.arraycopy(pending, 0, grown, 0, length);
+                    pending = grown;
+                }
+                pending[length++] = b;
+            }
+        }
+    }
+
+    void reset() {
+        length = 0;
+    }
+}
@@ -0,0 +1,107 @@
+package client.network;
+
+import client.utils.StringPool;
+
+public class ListEntryParser {
+    private CharSequence line;
+    private int idStart, idEnd;
+    private int fromStart, fromEnd;
+    private int sizeStart, sizeEnd;
+    private int timestampStart, timestampEnd;
+    private int subjectStart;
+
+    // "213 <id> <from> <size> <timestamp> [subject...]"
+    public boolean parse(CharSequence line) {
+        this.line = line;
+        int length = line.length();
+        if (!ResponseFramer.startsWith(line, "213 ") || ResponseFramer.contentEquals(line, "213 END")) {
+            return false;
+        }
+
+        idStart = 4;
+        idEnd = indexOfSpace(line, idStart);
+        if (idEnd < 0) {
+            return false;
+        }
+
+        fromStart = idEnd + 1;
+        fromEnd = indexOfSpace(line, fromStart);
+        if (fromEnd < 0) {
+            return false;
+        }
+
+        sizeStart = fromEnd + 1;
+        sizeEnd = indexOfSpace(line, sizeStart);
+        if (sizeEnd < 0) {
+            return false;
+        }
+
+        timestampStart = sizeEnd + 1;
+        timestampEnd = indexOfSpace(line, timestampStart);
+        if (timestampEnd < 0) {
+            timestampEnd = length;
+            subjectStart = -1;
+        } else {
+            subjectStart = timestampEnd + 1;
+        }
+        return true;
+    }
+
+    public static boolean isCountLine(CharSequence line) {
+        if (!ResponseFramer.startsWith(line, "213 ") || line.length() == 4) {
+            return false;
+        }
+        for (int i = 4; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String id() {
+        return line.subSequence(idStart, idEnd).toString();
+    }
+
+    public CharSequence line() {
+        return line;
+    }
+
+    public int fromStart() {
+        return fromStart;
+    }
+
+    public int fromEnd() {
+        return fromEnd;
+    }
+
+    public String from(StringPool pool) {
+        return pool.intern(line, fromStart, fromEnd);
+    }
+
+    public long size() {
+        return Long.parseLong(line, sizeStart, sizeEnd, 10);
+    }
+
+    public long timestamp() {
+        return Long.parseLong(line, timestampStart, timestampEnd, 10);
+    }
+
+    public boolean hasSubject() {
+        return subjectStart >= 0;
+    }
+
+    public String subject() {
+        return line.subSequence(subjectStart, line.length()).toString();
+    }
+
+    private static int indexOfSpace(CharSequence text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
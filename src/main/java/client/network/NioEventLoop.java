@@ -0,0 +1,94 @@
+package client.network;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class NioEventLoop implements Runnable {
+    private static NioEventLoop instance;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private NioEventLoop() throws IOException {
+        this.selector = Selector.open();
+    }
+
+    static synchronized NioEventLoop getInstance() throws IOException {
+        if (instance == null) {
+            instance = new NioEventLoop();
+            Thread thread = new Thread(instance, "maillite-nio-selector");
+            thread.setDaemon(true);
+            thread.start();
+            System.out.println("✅ NIO selector thread started");
+        }
+        return instance;
+    }
+
+    CompletableFuture<SelectionKey> register(SocketChannel channel, int ops, NioTransport transport) {
+        CompletableFuture<SelectionKey> future = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                future.complete(channel.register(selector, ops, transport));
+            } catch (ClosedChannelException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+                runTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    NioTransport transport = (NioTransport) key.attachment();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    try {
+                        if (key.isConnectable()) {
+                            transport.onConnectable(key);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            transport.onReadable(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            transport.onWritable(key);
+                        }
+                    } catch (IOException e) {
+                        transport.onFailure(key, e);
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("❌ NIO selector error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package client.network;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class NioTransport implements Transport {
+    private static final int BUFFER_SIZE = 8192;
+    private static final String EOF = new String("EOF");
+    // Reading pauses once this many decoded lines are waiting and resumes when
+    // the reader has drained the queue to LOW_WATER. One read can decode at
+    // most BUFFER_SIZE lines, so the queue never holds more than its capacity.
+    private static final int HIGH_WATER = 4096;
+    private static final int LOW_WATER = 1024;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final LineDecoder decoder = new LineDecoder();
+    private final BlockingQueue<String> lines = new LinkedBlockingQueue<>(HIGH_WATER + BUFFER_SIZE + 2);
+    private final AtomicBoolean readPaused = new AtomicBoolean();
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+    private final Object writeMonitor = new Object();
+
+    private NioEventLoop loop;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private int timeoutMillis;
+    private volatile boolean writable;
+    private volatile IOException failure;
+
+    @Override
+    public void open(String host, int port, int timeoutMillis) throws IOException {
+        this.timeoutMillis = timeoutMillis;
+        this.loop = NioEventLoop.getInstance();
+
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+        boolean immediate = channel.connect(new InetSocketAddress(host, port));
+        int ops = immediate ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT;
+
+        try {
+            key = loop.register(channel, ops, this).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (immediate) {
+                connected.complete(null);
+            }
+            connected.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            channel.close();
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (TimeoutException e) {
+            channel.close();
+            throw new SocketTimeoutException("Connect timed out to " + host + ":" + port);
+        } catch (InterruptedException e) {
+            channel.close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Connect interrupted");
+        }
+    }
+
+    void onConnectable(SelectionKey key) throws IOException {
+        if (channel.finishConnect()) {
+            key.interestOps(SelectionKey.OP_READ);
+            connected.complete(null);
+        }
+    }
+
+    void onReadable(SelectionKey key) throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            key.cancel();
+            lines.add(EOF);
+            return;
+        }
+
+        readBuffer.flip();
+        decoder.decode(readBuffer, lines::add);
+        readBuffer.clear();
+        if (lines.size() >= HIGH_WATER) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            readPaused.set(true);
+        }
+    }
+
+    void onWritable(SelectionKey key) {
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        synchronized (writeMonitor) {
+            writable = true;
+            writeMonitor.notifyAll();
+        }
+    }
+
+    void onFailure(SelectionKey key, IOException e) {
+        key.cancel();
+        failure = e;
+        connected.completeExceptionally(e);
+        lines.add(EOF);
+        synchronized (writeMonitor) {
+            writeMonitor.notifyAll();
+        }
+    }
+
+    @Override
+    public void writeLine(String line) throws IOException {
+        synchronized (writeMonitor) {
+            encode(CharBuffer.wrap(line));
+            encode(CharBuffer.wrap(System.lineSeparator()));
+        }
+    }
+
+    private void encode(CharBuffer chars) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, writeBuffer, true);
+            if (result.isOverflow()) {
+                drainWriteBuffer();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                encoder.reset();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer data) throws IOException {
+        synchronized (writeMonitor) {
+            drainWriteBuffer();
+            while (data.hasRemaining()) {
+                checkFailure();
+                if (channel.write(data) == 0) {
+                    awaitWritable();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (writeMonitor) {
+            drainWriteBuffer();
+        }
+    }
+
+    private void drainWriteBuffer() throws IOException {
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                checkFailure();
+                if (channel.write(writeBuffer) == 0) {
+                    awaitWritable();
+                }
+            }
+        } finally {
+            writeBuffer.compact();
+        }
+    }
+
+    private void awaitWritable() throws IOException {
+        writable = false;
+        loop.execute(() -> {
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        });
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while (!writable && failure == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("Write timed out");
+                }
+                writeMonitor.wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Write interrupted");
+        }
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        try {
+            String line = lines.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (line == null) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+            if (line == EOF) {
+                lines.add(EOF);
+                checkFailure();
+                return null;
+            }
+            if (readPaused.get() && lines.size() <= LOW_WATER && readPaused.compareAndSet(true, false)) {
+                loop.execute(() -> {
+                    if (key.isValid()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                    }
+                });
+            }
+            return line;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Read interrupted");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (key != null && !key.isValid()) {
+            throw new EOFException("Connection closed");
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel != null && channel.isOpen() && channel.isConnected() && failure == null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (key != null) {
+            key.cancel();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        lines.clear();
+        lines.add(EOF);
+        decoder.reset();
+    }
+}
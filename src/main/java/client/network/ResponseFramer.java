@@ -0,0 +1,118 @@
+package client.network;
+
+class ResponseFramer {
+    enum Kind { SINGLE, LIST, WHO, RETR, GENERIC }
+
+    private enum State { FIRST, ENTRIES, HEADERS, BODY, DONE }
+
+    private final Kind kind;
+    private State state = State.FIRST;
+
+    ResponseFramer(Kind kind) {
+        this.kind = kind;
+    }
+
+    static ResponseFramer forCommand(CharSequence command) {
+        return new ResponseFramer(kindOf(command));
+    }
+
+    static Kind kindOf(CharSequence command) {
+        if (startsWith(command, "LIST")) return Kind.LIST;
+        if (startsWith(command, "RETR")) return Kind.RETR;
+        if (startsWith(command, "WHO")) return Kind.WHO;
+        return Kind.SINGLE;
+    }
+
+    static ResponseFramer generic() {
+        return new ResponseFramer(Kind.GENERIC);
+    }
+
+    boolean isMultiLine() { return kind != Kind.SINGLE; }
+
+    boolean isDone() { return state == State.DONE; }
+
+    boolean accept(CharSequence line) {
+        switch (kind) {
+            case SINGLE:
+                state = State.DONE;
+                break;
+            case LIST:
+                acceptCoded(line, "213", "213 END");
+                break;
+            case WHO:
+                acceptCoded(line, "212", "212 END");
+                break;
+            case RETR:
+                acceptRetr(line);
+                break;
+            default:
+                acceptGeneric(line);
+                break;
+        }
+        return state == State.DONE;
+    }
+
+    // LIST and WHO: every line carries the same code until "<code> END"; any
+    // other status line (550, 500, ...) ends the response.
+    private void acceptCoded(CharSequence line, String code, String terminator) {
+        if (!startsWith(line, code) || contentEquals(line, terminator)) {
+            state = State.DONE;
+        } else {
+            state = State.ENTRIES;
+        }
+    }
+
+    // RETR: "214 <field>" headers, then raw body lines after "214 BODY" that
+    // end only at an exact "214 END", so body text can contain anything.
+    private void acceptRetr(CharSequence line) {
+        if (state == State.BODY) {
+            if (contentEquals(line, "214 END")) {
+                state = State.DONE;
+            }
+            return;
+        }
+        if (!startsWith(line, "214")) {
+            state = State.DONE;
+        } else if (contentEquals(line, "214 BODY")) {
+            state = State.BODY;
+        } else if (contentEquals(line, "214 END")) {
+            state = State.DONE;
+        } else {
+            state = State.HEADERS;
+        }
+    }
+
+    private void acceptGeneric(CharSequence line) {
+        if (endsWith(line, "END") ||
+                startsWith(line, "250") ||
+                startsWith(line, "550") ||
+                startsWith(line, "211") ||
+                startsWith(line, "212 END")) {
+            state = State.DONE;
+        }
+    }
+
+    static boolean startsWith(CharSequence text, String prefix) {
+        return equalsAt(text, 0, prefix);
+    }
+
+    static boolean endsWith(CharSequence text, String suffix) {
+        return text.length() >= suffix.length() && equalsAt(text, text.length() - suffix.length(), suffix);
+    }
+
+    static boolean contentEquals(CharSequence text, String value) {
+        return text.length() == value.length() && equalsAt(text, 0, value);
+    }
+
+    static boolean equalsAt(CharSequence text, int offset, String value) {
+        if (offset < 0 || text.length() - offset < value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (text.charAt(offset + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,68 @@
+package client.network;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+class SocketTransport implements Transport {
+    private Socket socket;
+    private BufferedReader reader;
+    private PrintWriter writer;
+    private OutputStream output;
+
+    @Override
+    public void open(String host, int port, int timeoutMillis) throws IOException {
+        socket = new Socket(host, port);
+        socket.setSoTimeout(timeoutMillis);
+
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        output = new BufferedOutputStream(socket.getOutputStream());
+        writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), true);
+    }
+
+    @Override
+    public void writeLine(String line) {
+        writer.write(line);
+        writer.write(System.lineSeparator());
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer data) throws IOException {
+        writer.flush();
+        if (data.hasArray()) {
+            output.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+        } else {
+            byte[] chunk = new byte[data.remaining()];
+            data.get(chunk);
+            output.write(chunk);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("Write failed");
+        }
+        output.flush();
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        return reader.readLine();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socket != null && socket.isConnected() && !socket.isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) reader.close();
+        if (writer != null) writer.close();
+        if (socket != null) socket.close();
+    }
+}
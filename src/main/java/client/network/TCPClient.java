@@ -1,31 +1,105 @@
 package client.network;
 
-import java.io.*;
-import java.net.Socket;
+import client.utils.Config;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 public class TCPClient {
-    private Socket socket;
-    private BufferedReader reader;
-    private PrintWriter writer;
+    // Pipelined futures are completed off the client's monitor so that
+    // dependent stages never run while the connection is locked.
+    private static final Executor COMPLETER = task -> Thread.ofVirtual().name("maillite-pipeline").start(task);
+
+    private Transport transport;
     private String host;
     private int port;
+    private boolean nonBlocking;
+    private volatile boolean broken;
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    private final Deque<PendingCommand> pipeline = new ArrayDeque<>();
+    private int pipelineDepth = Config.PIPELINE_DEPTH;
+
+    private static class PendingCommand {
+        final String command;
+        final PipelinedFuture future;
+
+        PendingCommand(String command, PipelinedFuture future) {
+            this.command = command;
+            this.future = future;
+        }
+    }
+
+    // Waiting on a reply that is still queued drains the pipeline first, so
+    // join() or get() cannot block forever on a command nobody flushed.
+    private class PipelinedFuture extends CompletableFuture<List<String>> {
+        volatile boolean queued = true;
+
+        @Override
+        public List<String> join() {
+            flushIfQueued();
+            return super.join();
+        }
+
+        @Override
+        public List<String> get() throws InterruptedException, ExecutionException {
+            flushIfQueued();
+            return super.get();
+        }
+
+        @Override
+        public List<String> get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            flushIfQueued();
+            return super.get(timeout, unit);
+        }
+
+        private void flushIfQueued() {
+            if (queued) {
+                flushPipeline();
+            }
+        }
+
+        void deliver(List<String> responses) {
+            queued = false;
+            COMPLETER.execute(() -> complete(responses));
+        }
+
+        void fail(Throwable cause) {
+            queued = false;
+            COMPLETER.execute(() -> completeExceptionally(cause));
+        }
+    }
 
     public TCPClient(String host, int port) {
+        this(host, port, false);
+    }
+
+    public TCPClient(String host, int port, boolean nonBlocking) {
         this.host = host;
         this.port = port;
+        this.nonBlocking = nonBlocking;
     }
 
     public boolean connect() {
         try {
-            socket = new Socket(host, port);
-            socket.setSoTimeout(30000);
+            broken = false;
+            transport = nonBlocking ? new NioTransport() : new SocketTransport();
+            transport.open(host, port, Config.SOCKET_TIMEOUT);
 
-            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            writer = new PrintWriter(socket.getOutputStream(), true);
-
-            System.out.println("✅ Connected to server " + host + ":" + port);
+            System.out.println("✅ Connected to server " + host + ":" + port + (nonBlocking ? " (NIO)" : ""));
             return true;
 
         } catch (IOException e) {
@@ -34,61 +108,260 @@ public class TCPClient {
         }
     }
 
-    public String sendCommand(String command) {
+    public synchronized String sendCommand(String command) {
+        drainPipeline();
         try {
             System.out.println("📤 SENDING: " + command);
-            writer.println(command);
-            writer.flush();
+            transport.writeLine(command);
+            transport.flush();
 
-            String response = reader.readLine();
+            String response = readLine();
+            if (response == null) {
+                broken = true;
+            }
             System.out.println("📥 RECEIVED: " + response);
             return response;
 
         } catch (IOException e) {
+            broken = true;
             System.err.println("❌ Command failed: " + command + " - " + e.getMessage());
             return null;
         }
     }
 
-    public List<String> sendMultiLineCommand(String command) {
+    public synchronized List<String> sendMultiLineCommand(String command) {
+        drainPipeline();
         List<String> responses = new ArrayList<>();
         try {
             System.out.println("📤 SENDING MULTI: " + command);
-            writer.println(command);
-            writer.flush();
+            transport.writeLine(command);
+            transport.flush();
+
+            readMultiLineResponse(multiLineFramer(command), responses);
 
+        } catch (IOException e) {
+            broken = true;
+            System.err.println("❌ Multi-line command failed: " + command + " - " + e.getMessage());
+        }
+        return responses;
+    }
+
+    public synchronized boolean streamMultiLineCommand(String command, Consumer<String> lineConsumer) {
+        drainPipeline();
+        RuntimeException consumerFailure = null;
+        try {
+            System.out.println("📤 SENDING STREAM: " + command);
+            transport.writeLine(command);
+            transport.flush();
+
+            ResponseFramer framer = multiLineFramer(command);
             String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("📥 MULTI LINE: " + line);
-                responses.add(line);
+            int lineCount = 0;
+            while ((line = readLine()) != null) {
+                lineCount++;
+                // A failing consumer must not leave the rest of the response
+                // on the socket: keep reading up to the terminator, then rethrow.
+                if (consumerFailure == null) {
+                    try {
+                        lineConsumer.accept(line);
+                    } catch (RuntimeException e) {
+                        consumerFailure = e;
+                    }
+                }
+                if (framer.accept(line)) {
+                    if (consumerFailure != null) {
+                        throw consumerFailure;
+                    }
+                    System.out.println("📥 STREAMED " + lineCount + " lines");
+                    return true;
+                }
+            }
+            broken = true;
 
-                if (line.endsWith("END") ||
-                        line.startsWith("250") ||
-                        line.startsWith("550") ||
-                        line.startsWith("211") ||
-                        line.startsWith("212 END")) {
-                    break;
+        } catch (IOException e) {
+            broken = true;
+            System.err.println("❌ Streaming command failed: " + command + " - " + e.getMessage());
+        }
+        if (consumerFailure != null) {
+            throw consumerFailure;
+        }
+        return false;
+    }
+
+    public synchronized String sendBody(ReadableByteChannel source, long byteLength) {
+        drainPipeline();
+        try {
+            System.out.println("📤 SENDING BODY: " + byteLength + " bytes");
+            ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(Config.SEND_CHUNK_SIZE, Math.max(1, byteLength)));
+            long remaining = byteLength;
+
+            while (remaining > 0) {
+                chunk.clear();
+                if (remaining < chunk.capacity()) {
+                    chunk.limit((int) remaining);
+                }
+                int read = source.read(chunk);
+                if (read < 0) {
+                    throw new EOFException("Body ended after " + (byteLength - remaining) + " of " + byteLength + " bytes");
                 }
+                chunk.flip();
+                transport.writeBytes(chunk);
+                remaining -= read;
             }
 
+            transport.writeLine("");
+            transport.flush();
+
+            String response = readLine();
+            if (response == null) {
+                broken = true;
+            }
+            System.out.println("📥 RECEIVED: " + response);
+            return response;
+
         } catch (IOException e) {
-            System.err.println("❌ Multi-line command failed: " + command + " - " + e.getMessage());
+            broken = true;
+            System.err.println("❌ Body transfer failed - " + e.getMessage());
+            return null;
         }
-        return responses;
     }
 
-    public BufferedReader getReader() { return reader; }
-    public PrintWriter getWriter() { return writer; }
-    public boolean isConnected() { return socket != null && socket.isConnected() && !socket.isClosed(); }
+    // The command is only written to the send buffer. Its reply is read when
+    // the pipeline is drained: by flushPipeline(), the next non-pipelined
+    // command, the depth limit, or waiting on the returned future.
+    public synchronized CompletableFuture<List<String>> sendPipelined(String command) {
+        if (transport == null) {
+            return CompletableFuture.failedFuture(new IOException("Not connected"));
+        }
+        PipelinedFuture future = new PipelinedFuture();
+
+        if (pipeline.size() >= pipelineDepth) {
+            completeOldest();
+        }
+
+        try {
+            System.out.println("📤 PIPELINED: " + command);
+            transport.writeLine(command);
+            pipeline.addLast(new PendingCommand(command, future));
+        } catch (IOException e) {
+            broken = true;
+            System.err.println("❌ Pipelined command failed: " + command + " - " + e.getMessage());
+            future.fail(e);
+        }
+        return future;
+    }
+
+    public synchronized String sendData(String data) {
+        drainPipeline();
+        try {
+            System.out.println("📤 SENDING DATA: " + data.length() + " chars");
+            transport.writeLine(data);
+            transport.flush();
+
+            String response = readLine();
+            if (response == null) {
+                broken = true;
+            }
+            System.out.println("📥 RECEIVED: " + response);
+            return response;
+
+        } catch (IOException e) {
+            broken = true;
+            System.err.println("❌ Data transfer failed - " + e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized void flushPipeline() {
+        drainPipeline();
+    }
+
+    public synchronized int getPipelineDepth() { return pipelineDepth; }
+
+    public synchronized void setPipelineDepth(int depth) {
+        drainPipeline();
+        this.pipelineDepth = Math.max(1, depth);
+    }
+
+    private void drainPipeline() {
+        while (!pipeline.isEmpty()) {
+            completeOldest();
+        }
+    }
+
+    private void completeOldest() {
+        PendingCommand pending = pipeline.pollFirst();
+        if (pending == null) return;
+
+        try {
+            transport.flush();
+            List<String> responses = new ArrayList<>();
+            ResponseFramer framer = ResponseFramer.forCommand(pending.command);
+            if (framer.isMultiLine()) {
+                readMultiLineResponse(framer, responses);
+            } else {
+                String line = readLine();
+                if (line == null) {
+                    throw new EOFException("Connection closed by server");
+                }
+                System.out.println("📥 PIPELINED: " + line);
+                responses.add(line);
+            }
+            pending.future.deliver(responses);
+
+        } catch (IOException e) {
+            broken = true;
+            System.err.println("❌ Pipelined command failed: " + pending.command + " - " + e.getMessage());
+            pending.future.fail(e);
+            failPipeline(e);
+        }
+    }
+
+    private void failPipeline(IOException cause) {
+        PendingCommand pending;
+        while ((pending = pipeline.pollFirst()) != null) {
+            pending.future.fail(cause);
+        }
+    }
+
+    private void readMultiLineResponse(ResponseFramer framer, List<String> responses) throws IOException {
+        String line;
+        while ((line = readLine()) != null) {
+            responses.add(line);
+
+            if (framer.accept(line)) {
+                break;
+            }
+        }
+        if (line == null) {
+            broken = true;
+        }
+        System.out.println("📥 MULTI: " + responses.size() + " lines");
+    }
+
+    private String readLine() throws IOException {
+        String line = transport.readLine();
+        if (line != null) {
+            lastActivity = System.currentTimeMillis();
+        }
+        return line;
+    }
+
+    private ResponseFramer multiLineFramer(String command) {
+        ResponseFramer framer = ResponseFramer.forCommand(command);
+        return framer.isMultiLine() ? framer : ResponseFramer.generic();
+    }
+
+    public boolean isNonBlocking() { return nonBlocking; }
+    public long getLastActivity() { return lastActivity; }
+    public boolean isConnected() { return !broken && transport != null && transport.isOpen(); }
 
     public void close() {
         try {
-            if (reader != null) reader.close();
-            if (writer != null) writer.close();
-            if (socket != null) socket.close();
+            if (transport != null) transport.close();
             System.out.println("🔌 TCP connection closed");
         } catch (IOException e) {
             System.err.println("❌ Error closing connection: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package client.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+interface Transport {
+    void open(String host, int port, int timeoutMillis) throws IOException;
+
+    void writeLine(String line) throws IOException;
+
+    void writeBytes(ByteBuffer data) throws IOException;
+
+    void flush() throws IOException;
+
+    String readLine() throws IOException;
+
+    boolean isOpen();
+
+    void close() throws IOException;
+}
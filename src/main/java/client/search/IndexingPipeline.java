@@ -0,0 +1,316 @@
+package client.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+public class IndexingPipeline {
+    private final InvertedIndex searchIndex;
+    private final TrigramIndex substringIndex;
+    private final Function<String, String> folderOf;
+    private final int capacity;
+    private final long maxQueuedBytes;
+    private final int batchSize;
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final ArrayDeque<Job> queue = new ArrayDeque<>();
+    private final Set<String> pending = new HashSet<>();
+    private final Object commitLock = new Object();
+    private long queuedBytes;
+    private int inFlight;
+    private long generation;
+    private boolean running = true;
+
+    private long submitted;
+    private long indexed;
+    private long indexedBytes;
+    private long batches;
+    private long busyNanos;
+    private long blockedSubmits;
+    private long blockedNanos;
+    private long droppedOffers;
+    private int maxDepth;
+
+    private static final class Job {
+        final String messageId;
+        final String folder;
+        final String from;
+        final String subject;
+        final String body;
+        final long bytes;
+        final long generation;
+
+        Job(String messageId, String folder, String from, String subject, String body, long generation) {
+            this.messageId = messageId;
+            this.folder = folder;
+            this.from = from;
+            this.subject = subject;
+            this.body = body;
+            this.bytes = 2L * (length(from) + length(subject) + length(body));
+            this.generation = generation;
+        }
+    }
+
+    public IndexingPipeline(InvertedIndex searchIndex, TrigramIndex substringIndex, Function<String, String> folderOf,
+                            int workerCount, int capacity, long maxQueuedBytes, int batchSize) {
+        this.searchIndex = searchIndex;
+        this.substringIndex = substringIndex;
+        this.folderOf = folderOf;
+        this.capacity = capacity;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.batchSize = batchSize;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::run, "maillite-indexer-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    public boolean submit(String messageId, String from, String subject, String body) {
+        return submit(messageId, null, from, subject, body);
+    }
+
+    // Blocks the producer while the queue is full; a large export is throttled
+    // to the indexing rate rather than buffering every body it has streamed.
+    public boolean submit(String messageId, String folder, String from, String subject, String body) {
+        return enqueue(messageId, folder, from, subject, body, true);
+    }
+
+    // Never waits, so opening a message is not held up by an indexing backlog.
+    // A job that does not fit is dropped; the body is in the offline store and
+    // is picked up by the backfill at the next login.
+    public boolean offer(String messageId, String from, String subject, String body) {
+        return enqueue(messageId, null, from, subject, body, false);
+    }
+
+    private boolean enqueue(String messageId, String folder, String from, String subject, String body,
+                            boolean wait) {
+        if (messageId == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (!running || pending.contains(messageId)) {
+                return false;
+            }
+            Job job = new Job(messageId, folder, from, subject, body, generation);
+            if (isFull(job.bytes)) {
+                if (!wait) {
+                    droppedOffers++;
+                    return false;
+                }
+                long start = System.nanoTime();
+                blockedSubmits++;
+                while (running && isFull(job.bytes)) {
+                    notFull.await();
+                }
+                blockedNanos += System.nanoTime() - start;
+                if (!running || job.generation != generation) {
+                    return false;
+                }
+            }
+            queue.addLast(job);
+            pending.add(messageId);
+            queuedBytes += job.bytes;
+            submitted++;
+            maxDepth = Math.max(maxDepth, queue.size());
+            notEmpty.signal();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (!queue.isEmpty() || inFlight > 0) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = idle.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        synchronized (commitLock) {
+            lock.lock();
+            try {
+                generation++;
+                queue.clear();
+                pending.clear();
+                queuedBytes = 0;
+                notFull.signalAll();
+                idle.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            searchIndex.clear();
+            substringIndex.clear();
+        }
+    }
+
+    public void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+            queue.clear();
+            pending.clear();
+            queuedBytes = 0;
+            notEmpty.signalAll();
+            notFull.signalAll();
+            idle.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getIndexedCount() {
+        lock.lock();
+        try {
+            return indexed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getStats() {
+        lock.lock();
+        try {
+            double seconds = busyNanos / 1e9;
+            return String.format("queued=%d/%d (%d KB, peak %d) submitted=%d indexed=%d batches=%d "
+                            + "throughput=%.0f msg/s %.1f MB/s blocked=%d (%d ms) dropped=%d",
+                    queue.size(), capacity, queuedBytes / 1024, maxDepth, submitted, indexed, batches,
+                    seconds > 0 ? indexed / seconds : 0.0,
+                    seconds > 0 ? indexedBytes / seconds / (1024 * 1024) : 0.0,
+                    blockedSubmits, TimeUnit.NANOSECONDS.toMillis(blockedNanos), droppedOffers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isFull(long bytes) {
+        if (queue.isEmpty()) {
+            return false;
+        }
+        return queue.size() >= capacity || queuedBytes + bytes > maxQueuedBytes;
+    }
+
+    private void run() {
+        while (true) {
+            List<Job> batch = new ArrayList<>(batchSize);
+            lock.lock();
+            try {
+                while (running && queue.isEmpty()) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (!running) {
+                    return;
+                }
+                while (!queue.isEmpty() && batch.size() < batchSize) {
+                    Job job = queue.pollFirst();
+                    queuedBytes -= job.bytes;
+                    batch.add(job);
+                }
+                inFlight++;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            long bytes = 0;
+            int committed = 0;
+            try {
+                List<InvertedIndex.Document> documents = new ArrayList<>(batch.size());
+                List<TrigramIndex.Document> grams = new ArrayList<>(batch.size());
+                for (Job job : batch) {
+                    // Resolved here, before any index lock is taken; the
+                    // resolver may wait on folder state.
+                    String folder = job.folder != null ? job.folder : folderOf.apply(job.messageId);
+                    documents.add(InvertedIndex.prepare(job.messageId, folder, job.from, job.subject, job.body));
+                    grams.add(TrigramIndex.prepare(job.messageId, job.from, job.subject, job.body));
+                    bytes += job.bytes;
+                }
+                synchronized (commitLock) {
+                    if (batch.get(0).generation == currentGeneration()) {
+                        searchIndex.commit(documents);
+                        substringIndex.commit(grams);
+                        committed = batch.size();
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Indexing batch failed: " + e.getMessage());
+            } finally {
+                finish(batch, committed, committed > 0 ? bytes : 0, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private long currentGeneration() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish(List<Job> batch, int committed, long bytes, long nanos) {
+        lock.lock();
+        try {
+            for (Job job : batch) {
+                if (job.generation == generation) {
+                    pending.remove(job.messageId);
+                }
+            }
+            inFlight--;
+            indexed += committed;
+            indexedBytes += bytes;
+            busyNanos += nanos;
+            if (committed > 0) {
+                batches++;
+            }
+            if (queue.isEmpty() && inFlight == 0) {
+                idle.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
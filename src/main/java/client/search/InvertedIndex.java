@@ -0,0 +1,366 @@
+package client.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class InvertedIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int HEADER_BOOST = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final Map<String, Segment> segments = new HashMap<>();
+    private final Map<String, String> folderOf = new HashMap<>();
+
+    public static class SearchHit {
+        private final String messageId;
+        private final String folder;
+        private final double score;
+
+        SearchHit(String messageId, String folder, double score) {
+            this.messageId = messageId;
+            this.folder = folder;
+            this.score = score;
+        }
+
+        public String getMessageId() { return messageId; }
+        public String getFolder() { return folder; }
+        public double getScore() { return score; }
+
+        @Override
+        public String toString() {
+            return String.format("%s/%s (%.3f)", folder, messageId, score);
+        }
+    }
+
+    static final class Document {
+        final String messageId;
+        final String folder;
+        final String[] terms;
+        final int[] freqs;
+
+        Document(String messageId, String folder, String[] terms, int[] freqs) {
+            this.messageId = messageId;
+            this.folder = folder;
+            this.terms = terms;
+            this.freqs = freqs;
+        }
+    }
+
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        int find(int doc, int from) {
+            int low = from;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (docs[mid] < doc) {
+                    low = mid + 1;
+                } else if (docs[mid] > doc) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    private static final class Segment {
+        final String folder;
+        final List<String> messageIds = new ArrayList<>();
+        final Map<String, Integer> docOf = new HashMap<>();
+        final List<int[]> forwardTerms = new ArrayList<>();
+        final List<int[]> forwardFreqs = new ArrayList<>();
+        final Map<Integer, Postings> postings = new HashMap<>();
+        final BitSet deleted = new BitSet();
+        int[] docLengths = new int[64];
+        long totalLength;
+        int liveDocs;
+
+        Segment(String folder) {
+            this.folder = folder;
+        }
+
+        int add(String messageId, int[] terms, int[] freqs) {
+            int doc = messageIds.size();
+            messageIds.add(messageId);
+            docOf.put(messageId, doc);
+            forwardTerms.add(terms);
+            forwardFreqs.add(freqs);
+            if (doc == docLengths.length) {
+                docLengths = Arrays.copyOf(docLengths, doc * 2);
+            }
+
+            int length = 0;
+            for (int i = 0; i < terms.length; i++) {
+                postings.computeIfAbsent(terms[i], k -> new Postings()).add(doc, freqs[i]);
+                length += freqs[i];
+            }
+            docLengths[doc] = length;
+            totalLength += length;
+            liveDocs++;
+            return doc;
+        }
+
+        void remove(int doc) {
+            if (deleted.get(doc)) {
+                return;
+            }
+            deleted.set(doc);
+            docOf.remove(messageIds.get(doc));
+            totalLength -= docLengths[doc];
+            liveDocs--;
+        }
+
+        boolean needsCompaction() {
+            return deleted.cardinality() > 64 && deleted.cardinality() * 2 > messageIds.size();
+        }
+
+        double averageLength() {
+            return liveDocs == 0 ? 1.0 : Math.max(1.0, (double) totalLength / liveDocs);
+        }
+    }
+
+    public void add(String folder, String messageId, String from, String subject, CharSequence body) {
+        commit(List.of(prepare(messageId, folder, from, subject, body)));
+    }
+
+    static Document prepare(String messageId, String folder, String from, String subject, CharSequence body) {
+        Map<String, int[]> counts = new HashMap<>();
+        Tokenizer.tokenize(from, token -> counts.computeIfAbsent(token, k -> new int[1])[0] += HEADER_BOOST);
+        Tokenizer.tokenize(subject, token -> counts.computeIfAbsent(token, k -> new int[1])[0] += HEADER_BOOST);
+        Tokenizer.tokenize(body, token -> counts.computeIfAbsent(token, k -> new int[1])[0]++);
+
+        String[] terms = new String[counts.size()];
+        int[] freqs = new int[counts.size()];
+        int i = 0;
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            terms[i] = entry.getKey();
+            freqs[i] = entry.getValue()[0];
+            i++;
+        }
+        return new Document(messageId, folder, terms, freqs);
+    }
+
+    void commit(List<Document> documents) {
+        lock.writeLock().lock();
+        try {
+            for (Document document : documents) {
+                String folder = document.folder;
+                removeLocked(document.messageId);
+                int[] terms = new int[document.terms.length];
+                for (int i = 0; i < terms.length; i++) {
+                    terms[i] = termIds.computeIfAbsent(document.terms[i], k -> termIds.size());
+                }
+                segments.computeIfAbsent(folder, Segment::new).add(document.messageId, terms, document.freqs);
+                folderOf.put(document.messageId, folder);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(String messageId) {
+        lock.readLock().lock();
+        try {
+            return folderOf.containsKey(messageId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(String messageId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(messageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean move(String messageId, String toFolder) {
+        lock.writeLock().lock();
+        try {
+            String fromFolder = folderOf.get(messageId);
+            if (fromFolder == null) {
+                return false;
+            }
+            if (fromFolder.equals(toFolder)) {
+                return true;
+            }
+            Segment source = segments.get(fromFolder);
+            int doc = source.docOf.get(messageId);
+            int[] terms = source.forwardTerms.get(doc);
+            int[] freqs = source.forwardFreqs.get(doc);
+            removeLocked(messageId);
+            segments.computeIfAbsent(toFolder, Segment::new).add(messageId, terms, freqs);
+            folderOf.put(messageId, toFolder);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            termIds.clear();
+            segments.clear();
+            folderOf.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<SearchHit> search(String query, String folder, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(Tokenizer.tokenize(query));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        PriorityQueue<SearchHit> top = new PriorityQueue<>(limit + 1,
+                (a, b) -> Double.compare(a.getScore(), b.getScore()));
+        lock.readLock().lock();
+        try {
+            int[] ids = new int[queryTerms.size()];
+            int n = 0;
+            for (String term : queryTerms) {
+                Integer id = termIds.get(term);
+                if (id == null) {
+                    return Collections.emptyList();
+                }
+                ids[n++] = id;
+            }
+
+            for (Segment segment : segments.values()) {
+                if (folder == null || segment.folder.equals(folder)) {
+                    searchSegment(segment, ids, limit, top);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<SearchHit> hits = new ArrayList<>(top);
+        hits.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        return hits;
+    }
+
+    public int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return folderOf.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return termIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void searchSegment(Segment segment, int[] termIds, int limit, PriorityQueue<SearchHit> top) {
+        Postings[] lists = new Postings[termIds.length];
+        for (int i = 0; i < termIds.length; i++) {
+            lists[i] = segment.postings.get(termIds[i]);
+            if (lists[i] == null) {
+                return;
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        double[] idf = new double[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            int documents = Math.max(segment.liveDocs, lists[i].size);
+            idf[i] = Math.log(1 + (documents - lists[i].size + 0.5) / (lists[i].size + 0.5));
+        }
+        double averageLength = segment.averageLength();
+        int[] cursors = new int[lists.length];
+
+        Postings driver = lists[0];
+        candidates:
+        for (int p = 0; p < driver.size; p++) {
+            int doc = driver.docs[p];
+            if (segment.deleted.get(doc)) {
+                continue;
+            }
+
+            double norm = K1 * (1 - B + B * segment.docLengths[doc] / averageLength);
+            double score = idf[0] * driver.freqs[p] * (K1 + 1) / (driver.freqs[p] + norm);
+            for (int i = 1; i < lists.length; i++) {
+                int found = lists[i].find(doc, cursors[i]);
+                if (found < 0) {
+                    cursors[i] = -found - 1;
+                    if (cursors[i] >= lists[i].size) {
+                        break candidates;
+                    }
+                    continue candidates;
+                }
+                cursors[i] = found;
+                int freq = lists[i].freqs[found];
+                score += idf[i] * freq * (K1 + 1) / (freq + norm);
+            }
+
+            if (top.size() < limit) {
+                top.add(new SearchHit(segment.messageIds.get(doc), segment.folder, score));
+            } else if (score > top.peek().getScore()) {
+                top.poll();
+                top.add(new SearchHit(segment.messageIds.get(doc), segment.folder, score));
+            }
+        }
+    }
+
+    private void removeLocked(String messageId) {
+        String folder = folderOf.remove(messageId);
+        if (folder == null) {
+            return;
+        }
+        Segment segment = segments.get(folder);
+        Integer doc = segment.docOf.get(messageId);
+        if (doc != null) {
+            segment.remove(doc);
+        }
+        if (segment.needsCompaction()) {
+            segments.put(folder, compact(segment));
+        }
+    }
+
+    private static Segment compact(Segment segment) {
+        Segment compacted = new Segment(segment.folder);
+        for (int doc = 0; doc < segment.messageIds.size(); doc++) {
+            if (!segment.deleted.get(doc)) {
+                compacted.add(segment.messageIds.get(doc), segment.forwardTerms.get(doc), segment.forwardFreqs.get(doc));
+            }
+        }
+        return compacted;
+    }
+}
@@ -0,0 +1,642 @@
+package client.search;
+
+import client.gui.models.HeaderStore;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+// Grammar, loosest binding first:
+//   query := and ("OR" and)*
+//   and   := unary ("AND"? unary)*
+//   unary := ("NOT" | "-") unary | "(" query ")" | term
+//   term  := field ":" value | "read" | "unread" | "archived" | word | "quoted phrase"
+public class MessageQuery {
+    public interface TextLookup {
+        // Message IDs whose headers or body contain the text, or null when the
+        // text cannot be looked up and the header columns have to be scanned.
+        List<String> find(String text);
+    }
+
+    private final String source;
+    private final Node root;
+    private final List<String> freeText;
+
+    private MessageQuery(String source, Node root, List<String> freeText) {
+        this.source = source;
+        this.root = root;
+        this.freeText = freeText;
+    }
+
+    public static MessageQuery parse(String query) {
+        Parser parser = new Parser(query);
+        Node root = parser.parseQuery();
+        if (parser.hasMore()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.peek() + "' in query");
+        }
+        return new MessageQuery(query, root, parser.freeText);
+    }
+
+    public BitSet evaluate(HeaderStore store, TextLookup lookup) {
+        return evaluate(store, lookup, null);
+    }
+
+    // Only rows in 'within' can match; pass the previous result when this
+    // query narrows the previous one.
+    public BitSet evaluate(HeaderStore store, TextLookup lookup, BitSet within) {
+        Context context = new Context(store, lookup);
+        BitSet result = root != null ? root.eval(context, within) : context.all();
+        if (within != null) {
+            result.and(within);
+        }
+        return result;
+    }
+
+    // True when every message matching this query also matches 'previous',
+    // e.g. "inv" -> "invoice" or "from:bob" -> "from:bob is:unread". Checked
+    // per conjunct, so anything it cannot prove (OR, NOT, edits) returns false.
+    public boolean narrows(MessageQuery previous) {
+        if (previous == null || previous.root == null) {
+            return previous != null;
+        }
+        if (root == null) {
+            return false;
+        }
+        for (Node required : conjuncts(previous.root)) {
+            boolean implied = false;
+            for (Node node : conjuncts(root)) {
+                if (node.implies(required)) {
+                    implied = true;
+                    break;
+                }
+            }
+            if (!implied) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty() { return root == null; }
+
+    public boolean isFreeTextOnly() { return root != null && root.isFreeText(); }
+
+    public String getFreeText() { return String.join(" ", freeText); }
+
+    public String getSource() { return source; }
+
+    @Override
+    public String toString() {
+        return root != null ? root.toString() : "ALL";
+    }
+
+    private static List<Node> conjuncts(Node node) {
+        return node instanceof And ? ((And) node).children : List.of(node);
+    }
+
+    private static final class Context {
+        final HeaderStore store;
+        final TextLookup lookup;
+        final int rows;
+
+        Context(HeaderStore store, TextLookup lookup) {
+            this.store = store;
+            this.lookup = lookup;
+            this.rows = store.size();
+        }
+
+        BitSet all() {
+            BitSet all = new BitSet(rows);
+            all.set(0, rows);
+            return all;
+        }
+    }
+
+    private abstract static class Node {
+        // Rows outside 'within' may be left out of the result; And passes its
+        // running intersection so expensive predicates only look at survivors.
+        abstract BitSet eval(Context context, BitSet within);
+
+        abstract int cost();
+
+        boolean isFreeText() { return false; }
+
+        boolean implies(Node other) { return toString().equals(other.toString()); }
+    }
+
+    private static final class And extends Node {
+        final List<Node> children;
+
+        And(List<Node> children) {
+            this.children = new ArrayList<>(children);
+            this.children.sort(Comparator.comparingInt(Node::cost));
+        }
+
+        @Override
+        BitSet eval(Context context, BitSet within) {
+            BitSet result = within != null ? (BitSet) within.clone() : null;
+            for (Node child : children) {
+                if (result != null && result.isEmpty()) {
+                    break;
+                }
+                if (child instanceof Not) {
+                    if (result == null) {
+                        result = context.all();
+                    }
+                    result.andNot(((Not) child).child.eval(context, result));
+                } else if (result == null) {
+                    result = child.eval(context, null);
+                } else {
+                    result.and(child.eval(context, result));
+                }
+            }
+            return result != null ? result : context.all();
+        }
+
+        @Override
+        int cost() {
+            return children.stream().mapToInt(Node::cost).max().orElse(0);
+        }
+
+        @Override
+        boolean isFreeText() {
+            return children.stream().allMatch(Node::isFreeText);
+        }
+
+        @Override
+        public String toString() {
+            return join(children, " AND ");
+        }
+    }
+
+    private static final class Or extends Node {
+        final List<Node> children;
+
+        Or(List<Node> children) {
+            this.children = new ArrayList<>(children);
+            this.children.sort(Comparator.comparingInt(Node::cost));
+        }
+
+        @Override
+        BitSet eval(Context context, BitSet within) {
+            BitSet result = new BitSet(context.rows);
+            for (Node child : children) {
+                result.or(child.eval(context, within));
+            }
+            return result;
+        }
+
+        @Override
+        int cost() {
+            return children.stream().mapToInt(Node::cost).sum();
+        }
+
+        @Override
+        public String toString() {
+            return join(children, " OR ");
+        }
+    }
+
+    private static final class Not extends Node {
+        final Node child;
+
+        Not(Node child) {
+            this.child = child;
+        }
+
+        @Override
+        BitSet eval(Context context, BitSet within) {
+            BitSet result = within != null ? (BitSet) within.clone() : context.all();
+            result.andNot(child.eval(context, result));
+            return result;
+        }
+
+        @Override
+        int cost() {
+            return child.cost();
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + child;
+        }
+    }
+
+    private static final class Flag extends Node {
+        final String name;
+        final boolean archived;
+        final boolean expected;
+
+        Flag(String name, boolean archived, boolean expected) {
+            this.name = name;
+            this.archived = archived;
+            this.expected = expected;
+        }
+
+        @Override
+        BitSet eval(Context context, BitSet within) {
+            BitSet bits = archived ? context.store.getArchivedBits() : context.store.getReadBits();
+            if (expected) {
+                return bits;
+            }
+            BitSet result = context.all();
+            result.andNot(bits);
+            return result;
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+
+        @Override
+        public String toString() {
+            return "is:" + name;
+        }
+    }
+
+    private static final class Address extends Node {
+        final boolean sender;
+        final String text;
+
+        Address(boolean sender, String text) {
+            this.sender = sender;
+            this.text = text.toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        BitSet eval(Context context, BitSet within) {
+            HeaderStore store = context.store;
+            int count = sender ? store.getSenderCount() : store.getRecipientCount();
+            BitSet codes = new BitSet(count);
+            for (int code = 0; code < count; code++) {
+                String value = sender ? store.getSenderKey(code) : store.getRecipientKey(code);
+                if (value != null && value.contains(text)) {
+                    codes.set(code);
+                }
+            }
+            return sender ? store.rowsFrom(codes) : store.rowsTo(codes);
+        }
+
+        @Override
+        int cost() {
+            return 2;
+        }
+
+        @Override
+        boolean implies(Node other) {
+            return other instanceof Address && ((Address) other).sender == sender
+                    && text.contains(((Address) other).text);
+        }
+
+        @Override
+        public String toString() {
+            return (sender ? "from:" : "to:") + text;
+        }
+    }
+
+    private static final class Range extends Node {
+        final String field;
+        final long from;
+        final long until;
+
+        Range(String field, long from, long until) {
+            this.field = field;
+            this.from = from;
+            this.until = until;
+        }
+
+        @Override
+        BitSet eval(Context context, BitSet within) {
+            return field.equals("size")
+                    ? context.store.rowsWithSize(from, until)
+                    : context.store.rowsWithTimestamp(from, until);
+        }
+
+        @Override
+        int cost() {
+            return 3;
+        }
+
+        @Override
+        boolean implies(Node other) {
+            return other instanceof Range && ((Range) other).field.equals(field)
+                    && from >= ((Range) other).from && until <= ((Range) other).until;
+        }
+
+        @Override
+        public String toString() {
+            return field + ":[" + from + "," + until + ")";
+        }
+    }
+
+    private static final class Text extends Node {
+        final String text;
+        final boolean subjectOnly;
+
+        Text(String text, boolean subjectOnly) {
+            this.text = text.toLowerCase(Locale.ROOT);
+            this.subjectOnly = subjectOnly;
+        }
+
+        @Override
+        BitSet eval(Context context, BitSet within) {
+            HeaderStore store = context.store;
+            BitSet result = new BitSet(context.rows);
+            List<String> ids = context.lookup != null ? context.lookup.find(text) : null;
+            if (ids != null) {
+                for (String id : ids) {
+                    int row = store.rowOf(id);
+                    if (row >= 0 && (within == null || within.get(row)) && (!subjectOnly || subjectContains(store, row))) {
+                        result.set(row);
+                    }
+                }
+                return result;
+            }
+
+            BitSet rows = within != null ? within : context.all();
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (subjectContains(store, row) || (!subjectOnly && contains(store.getFromKey(row)))) {
+                    result.set(row);
+                }
+            }
+            return result;
+        }
+
+        private boolean subjectContains(HeaderStore store, int row) {
+            return contains(store.getSubjectKey(row));
+        }
+
+        private boolean contains(String key) {
+            return key != null && key.contains(text);
+        }
+
+        @Override
+        int cost() {
+            return 5;
+        }
+
+        @Override
+        boolean implies(Node other) {
+            return other instanceof Text && ((Text) other).subjectOnly == subjectOnly
+                    && text.contains(((Text) other).text);
+        }
+
+        @Override
+        boolean isFreeText() {
+            return !subjectOnly;
+        }
+
+        @Override
+        public String toString() {
+            return (subjectOnly ? "subject:\"" : "\"") + text + "\"";
+        }
+    }
+
+    private static final class Parser {
+        private final List<String> tokens = new ArrayList<>();
+        private final List<String> freeText = new ArrayList<>();
+        private int position;
+        private int negations;
+
+        Parser(String query) {
+            tokenize(query != null ? query : "");
+        }
+
+        boolean hasMore() {
+            return position < tokens.size();
+        }
+
+        String peek() {
+            return tokens.get(position);
+        }
+
+        Node parseQuery() {
+            List<Node> alternatives = new ArrayList<>();
+            Node first = parseAnd();
+            if (first != null) {
+                alternatives.add(first);
+            }
+            while (hasMore() && peek().equals("OR")) {
+                position++;
+                Node next = parseAnd();
+                if (next == null) {
+                    throw new IllegalArgumentException("Missing term after OR");
+                }
+                alternatives.add(next);
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : alternatives.isEmpty() ? null : new Or(alternatives);
+        }
+
+        private Node parseAnd() {
+            List<Node> terms = new ArrayList<>();
+            while (hasMore() && !peek().equals("OR") && !peek().equals(")")) {
+                if (peek().equals("AND")) {
+                    position++;
+                    continue;
+                }
+                terms.add(parseUnary());
+            }
+            return terms.size() == 1 ? terms.get(0) : terms.isEmpty() ? null : new And(terms);
+        }
+
+        private Node parseUnary() {
+            String token = tokens.get(position++);
+            if (token.equals("NOT") || token.equals("-")) {
+                if (!hasMore()) {
+                    throw new IllegalArgumentException("Missing term after " + token);
+                }
+                negations++;
+                Node child = parseUnary();
+                negations--;
+                return new Not(child);
+            }
+            if (token.equals("(")) {
+                Node inner = parseQuery();
+                if (!hasMore() || !peek().equals(")")) {
+                    throw new IllegalArgumentException("Missing closing parenthesis");
+                }
+                position++;
+                if (inner == null) {
+                    throw new IllegalArgumentException("Empty parentheses");
+                }
+                return inner;
+            }
+            if (token.startsWith("\"")) {
+                return freeText(token.substring(1));
+            }
+            return parseTerm(token);
+        }
+
+        private Node parseTerm(String token) {
+            String lower = token.toLowerCase(Locale.ROOT);
+            switch (lower) {
+                case "read": return new Flag("read", false, true);
+                case "unread": return new Flag("unread", false, false);
+                case "archived": return new Flag("archived", true, true);
+            }
+
+            int colon = token.indexOf(':');
+            if (colon <= 0) {
+                return freeText(token);
+            }
+            String field = lower.substring(0, colon);
+            String value = token.substring(colon + 1);
+            if (value.startsWith("\"")) {
+                value = value.substring(1);
+            }
+            switch (field) {
+                case "from": return new Address(true, required(field, value));
+                case "to": return new Address(false, required(field, value));
+                case "subject": return new Text(required(field, value), true);
+                case "is": return parseFlag(required(field, value));
+                case "before": return new Range("date", Long.MIN_VALUE, startOfDay(parseDate(value)));
+                case "after": return new Range("date", startOfDay(parseDate(value).plusDays(1)), Long.MAX_VALUE);
+                case "on": {
+                    LocalDate day = parseDate(value);
+                    return new Range("date", startOfDay(day), startOfDay(day.plusDays(1)));
+                }
+                case "larger": return new Range("size", parseSize(value) + 1, Long.MAX_VALUE);
+                case "smaller": return new Range("size", Long.MIN_VALUE, parseSize(value));
+                case "size": return parseSizeComparison(required(field, value));
+                default: return freeText(token);
+            }
+        }
+
+        private Node freeText(String text) {
+            if (text.isEmpty()) {
+                throw new IllegalArgumentException("Empty search phrase");
+            }
+            if (negations == 0) {
+                freeText.add(text);
+            }
+            return new Text(text, false);
+        }
+
+        private static Node parseFlag(String value) {
+            switch (value.toLowerCase(Locale.ROOT)) {
+                case "read": return new Flag("read", false, true);
+                case "unread": return new Flag("unread", false, false);
+                case "archived": return new Flag("archived", true, true);
+                default: throw new IllegalArgumentException("Unknown flag: is:" + value);
+            }
+        }
+
+        private static Node parseSizeComparison(String value) {
+            if (value.startsWith(">=")) {
+                return new Range("size", parseSize(value.substring(2)), Long.MAX_VALUE);
+            }
+            if (value.startsWith("<=")) {
+                return new Range("size", Long.MIN_VALUE, parseSize(value.substring(2)) + 1);
+            }
+            if (value.startsWith(">")) {
+                return new Range("size", parseSize(value.substring(1)) + 1, Long.MAX_VALUE);
+            }
+            if (value.startsWith("<")) {
+                return new Range("size", Long.MIN_VALUE, parseSize(value.substring(1)));
+            }
+            long size = parseSize(value);
+            return new Range("size", size, size + 1);
+        }
+
+        private static String required(String field, String value) {
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Missing value for " + field + ":");
+            }
+            return value;
+        }
+
+        private static LocalDate parseDate(String value) {
+            try {
+                return LocalDate.parse(value);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid date '" + value + "', expected YYYY-MM-DD");
+            }
+        }
+
+        private static long startOfDay(LocalDate day) {
+            return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        private static long parseSize(String value) {
+            String text = value.trim().toLowerCase(Locale.ROOT);
+            if (text.endsWith("b")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            long multiplier = 1;
+            if (text.endsWith("k")) {
+                multiplier = 1024;
+            } else if (text.endsWith("m")) {
+                multiplier = 1024 * 1024;
+            }
+            if (multiplier > 1) {
+                text = text.substring(0, text.length() - 1);
+            }
+            try {
+                return Long.parseLong(text) * multiplier;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid size '" + value + "'");
+            }
+        }
+
+        private void tokenize(String query) {
+            int i = 0;
+            int length = query.length();
+            while (i < length) {
+                char c = query.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(' || c == ')') {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else if (c == '-' && i + 1 < length && !Character.isWhitespace(query.charAt(i + 1))) {
+                    tokens.add("-");
+                    i++;
+                } else {
+                    StringBuilder token = new StringBuilder();
+                    boolean quoted = false;
+                    while (i < length) {
+                        c = query.charAt(i);
+                        if (c == '"') {
+                            // A quote opens a phrase either at the start of the token
+                            // or straight after a field name; the quotes are dropped.
+                            if (!quoted && (token.length() == 0 || token.charAt(token.length() - 1) == ':')) {
+                                token.append('"');
+                            }
+                            quoted = !quoted;
+                            i++;
+                            continue;
+                        }
+                        if (!quoted && (Character.isWhitespace(c) || c == '(' || c == ')')) {
+                            break;
+                        }
+                        token.append(c);
+                        i++;
+                    }
+                    if (quoted) {
+                        throw new IllegalArgumentException("Unterminated quote in query");
+                    }
+                    if (!token.toString().equals("-")) {
+                        tokens.add(token.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    private static String join(List<Node> nodes, String separator) {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) {
+                text.append(separator);
+            }
+            text.append(nodes.get(i));
+        }
+        return text.append(')').toString();
+    }
+}
@@ -0,0 +1,42 @@
+package client.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Tokenizer {
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    public interface TokenSink {
+        void token(String token);
+    }
+
+    private Tokenizer() {}
+
+    public static void tokenize(CharSequence text, TokenSink sink) {
+        if (text == null) {
+            return;
+        }
+        StringBuilder token = new StringBuilder(16);
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (token.length() < MAX_TOKEN_LENGTH) {
+                    token.append(Character.toLowerCase(c));
+                }
+            } else if (token.length() > 0) {
+                if (token.length() >= MIN_TOKEN_LENGTH) {
+                    sink.token(token.toString());
+                }
+                token.setLength(0);
+            }
+        }
+    }
+
+    public static List<String> tokenize(CharSequence text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, tokens::add);
+        return tokens;
+    }
+}
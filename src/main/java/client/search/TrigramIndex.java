@@ -0,0 +1,321 @@
+package client.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class TrigramIndex {
+    public interface TextSource {
+        CharSequence bodyOf(String messageId);
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final List<String> messageIds = new ArrayList<>();
+    private final List<String> headerText = new ArrayList<>();
+    private final Map<String, Integer> docOf = new HashMap<>();
+    private final BitSet withBody = new BitSet();
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+
+    static final class Document {
+        final String messageId;
+        final String header;
+        final long[] grams;
+        final boolean hasBody;
+
+        Document(String messageId, String header, long[] grams, boolean hasBody) {
+            this.messageId = messageId;
+            this.header = header;
+            this.grams = grams;
+            this.hasBody = hasBody;
+        }
+    }
+
+    private static final class Postings {
+        int[] docs = new int[2];
+        int size;
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+
+        boolean contains(int doc, int[] cursor) {
+            int low = cursor[0];
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (docs[mid] < doc) {
+                    low = mid + 1;
+                } else if (docs[mid] > doc) {
+                    high = mid - 1;
+                } else {
+                    cursor[0] = mid + 1;
+                    return true;
+                }
+            }
+            cursor[0] = low;
+            return false;
+        }
+    }
+
+    public void addHeaders(String messageId, String from, String subject) {
+        commit(List.of(prepare(messageId, from, subject, null)));
+    }
+
+    public void add(String messageId, String from, String subject, CharSequence body) {
+        commit(List.of(prepare(messageId, from, subject, body)));
+    }
+
+    static Document prepare(String messageId, String from, String subject, CharSequence body) {
+        String header = ((from != null ? from : "") + "\n" + (subject != null ? subject : ""))
+                .toLowerCase(Locale.ROOT);
+        long[] headerGrams = trigrams(header);
+        long[] grams = body != null ? merge(headerGrams, trigrams(body)) : headerGrams;
+        return new Document(messageId, header, grams, body != null);
+    }
+
+    void commit(List<Document> documents) {
+        lock.writeLock().lock();
+        try {
+            for (Document document : documents) {
+                Integer existing = docOf.get(document.messageId);
+                if (existing != null) {
+                    if (!document.hasBody || withBody.get(existing)) {
+                        continue;
+                    }
+                    removeLocked(document.messageId);
+                }
+                addLocked(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String messageId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(messageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            messageIds.clear();
+            headerText.clear();
+            docOf.clear();
+            withBody.clear();
+            deleted = new BitSet();
+            deletedCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return docOf.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTrigramCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns null when the query is too short to narrow with trigrams and
+    // callers have to fall back to scanning.
+    public List<String> search(String query, TextSource bodies) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        if (needle.length() < 3) {
+            return null;
+        }
+
+        long[] grams = trigrams(needle);
+        List<String> candidates = new ArrayList<>();
+        List<Boolean> bodyCandidates = new ArrayList<>();
+        List<Boolean> headerMatches = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                lists[i] = postings.get(grams[i]);
+                if (lists[i] == null) {
+                    return new ArrayList<>();
+                }
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+            int[][] cursors = new int[lists.length][1];
+            candidates:
+            for (int p = 0; p < lists[0].size; p++) {
+                int doc = lists[0].docs[p];
+                if (deleted.get(doc)) {
+                    continue;
+                }
+                for (int i = 1; i < lists.length; i++) {
+                    if (!lists[i].contains(doc, cursors[i])) {
+                        continue candidates;
+                    }
+                }
+                candidates.add(messageIds.get(doc));
+                headerMatches.add(headerText.get(doc).contains(needle));
+                bodyCandidates.add(withBody.get(doc));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<String> matches = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            if (headerMatches.get(i)) {
+                matches.add(candidates.get(i));
+            } else if (bodyCandidates.get(i)) {
+                CharSequence body = bodies != null ? bodies.bodyOf(candidates.get(i)) : null;
+                if (body == null || containsIgnoreCase(body, needle)) {
+                    matches.add(candidates.get(i));
+                }
+            }
+        }
+        return matches;
+    }
+
+    private void addLocked(Document document) {
+        int doc = messageIds.size();
+        messageIds.add(document.messageId);
+        headerText.add(document.header);
+        docOf.put(document.messageId, doc);
+        for (long gram : document.grams) {
+            postings.computeIfAbsent(gram, k -> new Postings()).add(doc);
+        }
+        if (document.hasBody) {
+            withBody.set(doc);
+        }
+    }
+
+    private void removeLocked(String messageId) {
+        Integer doc = docOf.remove(messageId);
+        if (doc == null) {
+            return;
+        }
+        deleted.set(doc);
+        headerText.set(doc, "");
+        deletedCount++;
+        if (deletedCount > 1024 && deletedCount * 2 > messageIds.size()) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        int[] remap = new int[messageIds.size()];
+        List<String> keptIds = new ArrayList<>(docOf.size());
+        List<String> keptHeaders = new ArrayList<>(docOf.size());
+        BitSet keptBodies = new BitSet();
+        for (int doc = 0; doc < messageIds.size(); doc++) {
+            if (deleted.get(doc)) {
+                remap[doc] = -1;
+                continue;
+            }
+            remap[doc] = keptIds.size();
+            if (withBody.get(doc)) {
+                keptBodies.set(keptIds.size());
+            }
+            keptIds.add(messageIds.get(doc));
+            keptHeaders.add(headerText.get(doc));
+        }
+
+        postings.values().removeIf(list -> {
+            int size = 0;
+            for (int i = 0; i < list.size; i++) {
+                int doc = remap[list.docs[i]];
+                if (doc >= 0) {
+                    list.docs[size++] = doc;
+                }
+            }
+            list.size = size;
+            return size == 0;
+        });
+
+        messageIds.clear();
+        messageIds.addAll(keptIds);
+        headerText.clear();
+        headerText.addAll(keptHeaders);
+        withBody.clear();
+        withBody.or(keptBodies);
+        docOf.clear();
+        for (int doc = 0; doc < messageIds.size(); doc++) {
+            docOf.put(messageIds.get(doc), doc);
+        }
+        deleted = new BitSet();
+        deletedCount = 0;
+    }
+
+    private static long[] trigrams(CharSequence text) {
+        int length = text.length();
+        if (length < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[length - 2];
+        long c0 = Character.toLowerCase(text.charAt(0));
+        long c1 = Character.toLowerCase(text.charAt(1));
+        for (int i = 2; i < length; i++) {
+            long c2 = Character.toLowerCase(text.charAt(i));
+            grams[i - 2] = (c0 << 32) | (c1 << 16) | c2;
+            c0 = c1;
+            c1 = c2;
+        }
+        return unique(grams, grams.length);
+    }
+
+    private static long[] merge(long[] a, long[] b) {
+        long[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        return unique(all, all.length);
+    }
+
+    private static long[] unique(long[] values, int length) {
+        Arrays.sort(values, 0, length);
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            if (size == 0 || values[size - 1] != values[i]) {
+                values[size++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    private static boolean containsIgnoreCase(CharSequence text, String needle) {
+        int last = text.length() - needle.length();
+        for (int start = 0; start <= last; start++) {
+            int i = 0;
+            while (i < needle.length() && Character.toLowerCase(text.charAt(start + i)) == needle.charAt(i)) {
+                i++;
+            }
+            if (i == needle.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,615 @@
+package client.storage;
+
+import client.gui.models.Message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+public class MailboxStore implements Closeable {
+    private static final byte RECORD_HEADER = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final byte RECORD_BODY = 3;
+    private static final int RECORD_PREFIX = 9;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_FILE = "index.dat";
+    private static final int INDEX_MAGIC = 0x4D4C4958;
+    private static final int INDEX_VERSION = 1;
+
+    private final Path directory;
+    private final long segmentSize;
+
+    private final Map<String, LinkedHashMap<String, Message>> folders = new HashMap<>();
+    private final Map<String, Location> headerLocations = new HashMap<>();
+    private final Map<String, Location> bodyLocations = new HashMap<>();
+    private final TreeMap<Integer, Long> segmentLengths = new TreeMap<>();
+
+    private FileChannel activeChannel;
+    private int activeSegment;
+    private long liveBytes;
+    private boolean dirty;
+
+    private static final class Location {
+        final int segment;
+        final long offset;
+        final int length;
+
+        Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Record {
+        final byte type;
+        final byte[] payload;
+        final Location location;
+
+        Record(byte type, byte[] payload, Location location) {
+            this.type = type;
+            this.payload = payload;
+            this.location = location;
+        }
+    }
+
+    private MailboxStore(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    public static MailboxStore open(Path directory, long segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        MailboxStore store = new MailboxStore(directory, segmentSize);
+        store.recover();
+        return store;
+    }
+
+    public synchronized boolean hasFolder(String folder) {
+        return folders.containsKey(folder);
+    }
+
+    public synchronized List<Message> getFolder(String folder) {
+        LinkedHashMap<String, Message> headers = folders.get(folder);
+        List<Message> messages = new ArrayList<>(headers != null ? headers.size() : 0);
+        if (headers != null) {
+            for (Message header : headers.values()) {
+                messages.add(copyHeader(header));
+            }
+        }
+        return messages;
+    }
+
+    public synchronized void replaceFolder(String folder, List<Message> messages) throws IOException {
+        LinkedHashMap<String, Message> current = folders.computeIfAbsent(folder, k -> new LinkedHashMap<>());
+        Map<String, Message> incoming = new LinkedHashMap<>();
+        for (Message msg : messages) {
+            if (msg.getId() != null) {
+                incoming.put(msg.getId(), msg);
+            }
+        }
+
+        for (String id : new ArrayList<>(current.keySet())) {
+            if (!incoming.containsKey(id)) {
+                appendRemove(folder, id);
+            }
+        }
+        for (Message msg : incoming.values()) {
+            Message existing = current.get(msg.getId());
+            if (existing == null || !sameHeader(existing, msg)) {
+                appendHeader(folder, msg);
+            }
+        }
+
+        LinkedHashMap<String, Message> ordered = new LinkedHashMap<>();
+        for (Message msg : incoming.values()) {
+            ordered.put(msg.getId(), copyHeader(msg));
+        }
+        folders.put(folder, ordered);
+    }
+
+    public synchronized boolean hasBody(String messageId) {
+        return bodyLocations.containsKey(messageId);
+    }
+
+    public synchronized void putBody(Message msg) throws IOException {
+        if (msg == null || msg.getId() == null || msg.hasSpilledBody() || bodyLocations.containsKey(msg.getId())) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, msg.getId());
+        writeString(out, msg.getFrom());
+        writeString(out, msg.getTo());
+        writeString(out, msg.getSubject());
+        out.writeLong(msg.getTimestamp());
+        writeString(out, msg.getBody());
+        Location location = append(RECORD_BODY, bytes.toByteArray());
+        bodyLocations.put(msg.getId(), location);
+        liveBytes += location.length;
+    }
+
+    public synchronized Message getBody(String messageId) throws IOException {
+        Location location = bodyLocations.get(messageId);
+        if (location == null) {
+            return null;
+        }
+        Record record = readRecord(location);
+        if (record == null || record.type != RECORD_BODY) {
+            bodyLocations.remove(messageId);
+            liveBytes -= location.length;
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.payload));
+        Message msg = new Message();
+        msg.setId(readString(in));
+        msg.setFrom(readString(in));
+        msg.setTo(readString(in));
+        msg.setSubject(readString(in));
+        msg.setTimestamp(in.readLong());
+        msg.setBody(readString(in));
+        return msg;
+    }
+
+    public synchronized void checkpoint() throws IOException {
+        if (activeChannel == null || !dirty) {
+            return;
+        }
+        activeChannel.force(false);
+        writeIndex();
+        dirty = false;
+    }
+
+    public synchronized long getLiveBytes() { return liveBytes; }
+
+    public synchronized long getTotalBytes() {
+        long total = 0;
+        for (long length : segmentLengths.values()) {
+            total += length;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (activeChannel == null) {
+            return;
+        }
+        if (getTotalBytes() > segmentSize && liveBytes * 2 < getTotalBytes()) {
+            compact();
+        }
+        checkpoint();
+        activeChannel.close();
+        activeChannel = null;
+    }
+
+    private void recover() throws IOException {
+        for (Path segment : listSegments()) {
+            segmentLengths.put(segmentNumber(segment), Files.size(segment));
+        }
+
+        int replaySegment = segmentLengths.isEmpty() ? 1 : segmentLengths.firstKey();
+        long replayOffset = 0;
+        long[] checkpoint = readIndex();
+        if (checkpoint != null) {
+            replaySegment = (int) checkpoint[0];
+            replayOffset = checkpoint[1];
+        } else {
+            clearState();
+        }
+
+        for (Map.Entry<Integer, Long> entry : new ArrayList<>(segmentLengths.tailMap(replaySegment, true).entrySet())) {
+            long start = entry.getKey() == replaySegment ? replayOffset : 0;
+            replaySegment(entry.getKey(), start);
+        }
+
+        activeSegment = segmentLengths.isEmpty() ? 1 : segmentLengths.lastKey();
+        openActiveSegment();
+        dirty = true;
+        System.out.println("Mailbox store opened: " + directory + " (" + folders.size() + " folders, "
+                + bodyLocations.size() + " bodies)");
+    }
+
+    private void replaySegment(int segment, long start) throws IOException {
+        Path path = segmentPath(segment);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long offset = start;
+            long size = channel.size();
+            while (offset < size) {
+                Record record = readRecord(channel, new Location(segment, offset, 0));
+                if (record == null) {
+                    System.out.println("Truncating torn mailbox record in " + path.getFileName() + " at " + offset);
+                    channel.truncate(offset);
+                    break;
+                }
+                apply(record);
+                offset += record.location.length;
+            }
+            segmentLengths.put(segment, offset);
+            if (offset < size) {
+                for (Integer later : new ArrayList<>(segmentLengths.tailMap(segment, false).keySet())) {
+                    Files.deleteIfExists(segmentPath(later));
+                    segmentLengths.remove(later);
+                }
+            }
+        }
+    }
+
+    private void apply(Record record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.payload));
+        switch (record.type) {
+            case RECORD_HEADER: {
+                String folder = readString(in);
+                Message header = readHeader(in);
+                replaceLocation(headerLocations, key(folder, header.getId()), record.location);
+                folders.computeIfAbsent(folder, k -> new LinkedHashMap<>()).put(header.getId(), header);
+                break;
+            }
+            case RECORD_REMOVE: {
+                String folder = readString(in);
+                String id = readString(in);
+                replaceLocation(headerLocations, key(folder, id), null);
+                LinkedHashMap<String, Message> headers = folders.get(folder);
+                if (headers != null) {
+                    headers.remove(id);
+                }
+                break;
+            }
+            case RECORD_BODY: {
+                replaceLocation(bodyLocations, readString(in), record.location);
+                break;
+            }
+            default:
+                throw new IOException("Unknown mailbox record type " + record.type);
+        }
+    }
+
+    private void replaceLocation(Map<String, Location> locations, String key, Location location) {
+        Location previous = location != null ? locations.put(key, location) : locations.remove(key);
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+        if (location != null) {
+            liveBytes += location.length;
+        }
+    }
+
+    private void appendHeader(String folder, Message msg) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, folder);
+        writeString(out, msg.getId());
+        writeString(out, msg.getFrom());
+        writeString(out, msg.getTo());
+        writeString(out, msg.getSubject());
+        out.writeLong(msg.getTimestamp());
+        out.writeBoolean(msg.isRead());
+        out.writeBoolean(msg.isArchived());
+        out.writeLong(msg.getSize());
+        replaceLocation(headerLocations, key(folder, msg.getId()), append(RECORD_HEADER, bytes.toByteArray()));
+    }
+
+    private void appendRemove(String folder, String id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, folder);
+        writeString(out, id);
+        append(RECORD_REMOVE, bytes.toByteArray());
+        replaceLocation(headerLocations, key(folder, id), null);
+    }
+
+    private Message readHeader(DataInputStream in) throws IOException {
+        Message header = new Message();
+        header.setId(readString(in));
+        header.setFrom(readString(in));
+        header.setTo(readString(in));
+        header.setSubject(readString(in));
+        header.setTimestamp(in.readLong());
+        header.setRead(in.readBoolean());
+        header.setArchived(in.readBoolean());
+        if (in.available() >= Long.BYTES) {
+            header.setSize(in.readLong());
+        }
+        header.setBody("");
+        return header;
+    }
+
+    private Location append(byte type, byte[] payload) throws IOException {
+        if (activeChannel.size() > 0 && activeChannel.size() + RECORD_PREFIX + payload.length > segmentSize) {
+            rollSegment();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_PREFIX + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.flip();
+
+        long offset = activeChannel.size();
+        while (buffer.hasRemaining()) {
+            activeChannel.write(buffer, offset + buffer.position());
+        }
+        segmentLengths.put(activeSegment, offset + buffer.limit());
+        dirty = true;
+        return new Location(activeSegment, offset, buffer.limit());
+    }
+
+    private Record readRecord(Location location) throws IOException {
+        if (location.segment == activeSegment && activeChannel != null) {
+            return readRecord(activeChannel, location);
+        }
+        try (FileChannel channel = FileChannel.open(segmentPath(location.segment), StandardOpenOption.READ)) {
+            return readRecord(channel, location);
+        }
+    }
+
+    private Record readRecord(FileChannel channel, Location location) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX);
+        if (!readFully(channel, prefix, location.offset)) {
+            return null;
+        }
+        prefix.flip();
+        int length = prefix.getInt();
+        int checksum = prefix.getInt();
+        byte type = prefix.get();
+        if (length < 0 || length > MAX_RECORD_SIZE) {
+            return null;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (!readFully(channel, payload, location.offset + RECORD_PREFIX)) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload.array());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        return new Record(type, payload.array(), new Location(location.segment, location.offset, RECORD_PREFIX + length));
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rollSegment() throws IOException {
+        activeChannel.force(false);
+        activeChannel.close();
+        activeSegment++;
+        openActiveSegment();
+    }
+
+    private void openActiveSegment() throws IOException {
+        activeChannel = FileChannel.open(segmentPath(activeSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentLengths.putIfAbsent(activeSegment, activeChannel.size());
+    }
+
+    private void compact() throws IOException {
+        System.out.println("Compacting mailbox store: " + liveBytes + " live of " + getTotalBytes() + " bytes");
+        List<Integer> oldSegments = new ArrayList<>(segmentLengths.keySet());
+        Map<String, Location> oldHeaders = new HashMap<>(headerLocations);
+        Map<String, Location> oldBodies = new HashMap<>(bodyLocations);
+
+        activeChannel.force(false);
+        activeChannel.close();
+        activeSegment++;
+        openActiveSegment();
+        liveBytes = 0;
+
+        for (Map.Entry<String, Location> entry : oldHeaders.entrySet()) {
+            headerLocations.put(entry.getKey(), copyRecord(entry.getValue()));
+        }
+        for (Map.Entry<String, Location> entry : oldBodies.entrySet()) {
+            bodyLocations.put(entry.getKey(), copyRecord(entry.getValue()));
+        }
+        activeChannel.force(false);
+        writeIndex();
+
+        for (Integer segment : oldSegments) {
+            Files.deleteIfExists(segmentPath(segment));
+            segmentLengths.remove(segment);
+        }
+        dirty = false;
+    }
+
+    private Location copyRecord(Location location) throws IOException {
+        Record record = readRecord(location);
+        if (record == null) {
+            throw new IOException("Mailbox record at " + location.segment + ":" + location.offset + " is unreadable");
+        }
+        Location copied = append(record.type, record.payload);
+        liveBytes += copied.length;
+        return copied;
+    }
+
+    private void writeIndex() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(INDEX_VERSION);
+        out.writeInt(activeSegment);
+        out.writeLong(segmentLengths.getOrDefault(activeSegment, 0L));
+
+        out.writeInt(headerLocations.size());
+        for (Map.Entry<String, LinkedHashMap<String, Message>> folder : folders.entrySet()) {
+            for (String id : folder.getValue().keySet()) {
+                writeLocation(out, headerLocations.get(key(folder.getKey(), id)));
+            }
+        }
+        out.writeInt(bodyLocations.size());
+        for (Map.Entry<String, Location> entry : bodyLocations.entrySet()) {
+            writeString(out, entry.getKey());
+            writeLocation(out, entry.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, directory.resolve(INDEX_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long[] readIndex() {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexPath)) {
+            return null;
+        }
+        try {
+            byte[] data = Files.readAllBytes(indexPath);
+            if (data.length < 8) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length - 8);
+            if (ByteBuffer.wrap(data, data.length - 8, 8).getLong() != crc.getValue()) {
+                System.out.println("Mailbox index checksum mismatch - rebuilding from log");
+                return null;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 8));
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                return null;
+            }
+            int checkpointSegment = in.readInt();
+            long checkpointOffset = in.readLong();
+
+            int headerCount = in.readInt();
+            for (int i = 0; i < headerCount; i++) {
+                Record record = readRecord(readLocation(in));
+                if (record == null || record.type != RECORD_HEADER) {
+                    throw new IOException("Indexed header record is unreadable");
+                }
+                apply(record);
+            }
+            int bodyCount = in.readInt();
+            for (int i = 0; i < bodyCount; i++) {
+                String id = readString(in);
+                replaceLocation(bodyLocations, id, readLocation(in));
+            }
+            return new long[]{checkpointSegment, checkpointOffset};
+        } catch (IOException e) {
+            System.out.println("Failed to load mailbox index - rebuilding from log: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void clearState() {
+        folders.clear();
+        headerLocations.clear();
+        bodyLocations.clear();
+        liveBytes = 0;
+    }
+
+    private static void writeLocation(DataOutputStream out, Location location) throws IOException {
+        out.writeInt(location.segment);
+        out.writeLong(location.offset);
+        out.writeInt(location.length);
+    }
+
+    private static Location readLocation(DataInputStream in) throws IOException {
+        return new Location(in.readInt(), in.readLong(), in.readInt());
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (var stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        return segments;
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String key(String folder, String id) {
+        return folder + '\u0000' + id;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        try {
+            in.readFully(bytes);
+        } catch (EOFException e) {
+            throw new IOException("Truncated string in mailbox record", e);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean sameHeader(Message a, Message b) {
+        return a.getTimestamp() == b.getTimestamp()
+                && a.getSize() == b.getSize()
+                && a.isRead() == b.isRead()
+                && a.isArchived() == b.isArchived()
+                && Objects.equals(a.getFrom(), b.getFrom())
+                && Objects.equals(a.getTo(), b.getTo())
+                && Objects.equals(a.getSubject(), b.getSubject());
+    }
+
+    private static Message copyHeader(Message msg) {
+        Message copy = new Message(msg.getId(), msg.getFrom(), msg.getTo(), msg.getSubject(), "", msg.getTimestamp());
+        copy.setSize(msg.getSize());
+        copy.setRead(msg.isRead());
+        copy.setArchived(msg.isArchived());
+        return copy;
+    }
+}
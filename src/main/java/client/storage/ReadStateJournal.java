@@ -0,0 +1,370 @@
+package client.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Compaction bounds the file to one entry per read ID, but IDs are never
+// pruned: the journal is shared by every account that logs in from this
+// directory, so no single session knows which IDs are still live.
+public class ReadStateJournal implements Closeable {
+    private static final byte OP_READ = '+';
+    private static final byte OP_UNREAD = '-';
+    private static final int COMPACTION_SLACK = 1024;
+
+    private final Path journalPath;
+    private final IdSet ids = new IdSet();
+    private final List<byte[]> appendedDuringCompaction = new ArrayList<>();
+
+    private FileChannel channel;
+    private long journalEntries;
+    private boolean compacting;
+    private boolean closed;
+
+    private ReadStateJournal(Path journalPath) {
+        this.journalPath = journalPath;
+    }
+
+    public static ReadStateJournal open(Path journalPath, Path legacySnapshot) throws IOException {
+        ReadStateJournal journal = new ReadStateJournal(journalPath);
+        boolean migrated = false;
+        if (!Files.exists(journalPath) && legacySnapshot != null && Files.exists(legacySnapshot)) {
+            migrated = journal.importLegacy(legacySnapshot);
+        }
+        boolean clean = journal.load();
+        journal.channel = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (migrated || !clean) {
+            journal.compactNow();
+        }
+        if (migrated) {
+            Files.move(legacySnapshot, legacySnapshot.resolveSibling(legacySnapshot.getFileName() + ".migrated"),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        System.out.println("Loaded " + journal.size() + " read messages from " + journalPath.getFileName());
+        return journal;
+    }
+
+    public synchronized boolean isRead(String messageId) {
+        return ids.contains(messageId);
+    }
+
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    public synchronized boolean markRead(String messageId) throws IOException {
+        if (messageId == null || !ids.add(messageId)) {
+            return false;
+        }
+        append(OP_READ, messageId);
+        return true;
+    }
+
+    public synchronized boolean markUnread(String messageId) throws IOException {
+        if (messageId == null || !ids.remove(messageId)) {
+            return false;
+        }
+        append(OP_UNREAD, messageId);
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        while (compacting) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        channel.close();
+    }
+
+    private void append(byte op, String messageId) throws IOException {
+        if (closed) {
+            throw new IOException("Read-state journal is closed");
+        }
+        byte[] entry = encode(op, messageId);
+        ByteBuffer buffer = ByteBuffer.wrap(entry);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        journalEntries++;
+        if (compacting) {
+            appendedDuringCompaction.add(entry);
+        } else if (journalEntries > 2L * ids.size() + COMPACTION_SLACK) {
+            startBackgroundCompaction();
+        }
+    }
+
+    private boolean load() throws IOException {
+        if (!Files.exists(journalPath)) {
+            return true;
+        }
+        boolean clean = true;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(journalPath))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(32);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                clean &= apply(line.toByteArray());
+                line.reset();
+            }
+            if (line.size() > 0) {
+                System.out.println("Discarding torn read-state journal entry");
+                clean = false;
+            }
+        }
+        if (journalEntries > 2L * ids.size() + COMPACTION_SLACK) {
+            clean = false;
+        }
+        return clean;
+    }
+
+    private boolean apply(byte[] entry) {
+        journalEntries++;
+        if (entry.length < 2) {
+            return false;
+        }
+        String id = new String(entry, 1, entry.length - 1, StandardCharsets.UTF_8);
+        if (entry[0] == OP_READ) {
+            ids.add(id);
+        } else if (entry[0] == OP_UNREAD) {
+            ids.remove(id);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean importLegacy(Path legacySnapshot) {
+        try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(legacySnapshot))) {
+            for (String id : (Set<String>) in.readObject()) {
+                ids.add(id);
+            }
+            System.out.println("Migrating " + ids.size() + " read messages from " + legacySnapshot.getFileName());
+            return true;
+        } catch (Exception e) {
+            System.out.println("Failed to migrate legacy read messages: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void startBackgroundCompaction() {
+        compacting = true;
+        List<String> snapshot = ids.toList();
+        appendedDuringCompaction.clear();
+        Thread compactor = new Thread(() -> {
+            try {
+                Path temp = writeSnapshot(snapshot);
+                synchronized (this) {
+                    swapIn(temp);
+                }
+            } catch (IOException e) {
+                System.err.println("Read-state journal compaction failed: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                    appendedDuringCompaction.clear();
+                    notifyAll();
+                }
+            }
+        }, "maillite-read-journal-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    private void compactNow() throws IOException {
+        appendedDuringCompaction.clear();
+        swapIn(writeSnapshot(ids.toList()));
+    }
+
+    private Path writeSnapshot(List<String> snapshot) throws IOException {
+        Path temp = journalPath.resolveSibling(journalPath.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(snapshot.size() * 8);
+            for (String id : snapshot) {
+                bytes.write(encode(OP_READ, id));
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        return temp;
+    }
+
+    private void swapIn(Path temp) throws IOException {
+        long entries = ids.size();
+        if (!appendedDuringCompaction.isEmpty()) {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                for (byte[] entry : appendedDuringCompaction) {
+                    out.write(ByteBuffer.wrap(entry));
+                }
+                out.force(true);
+            }
+            entries += appendedDuringCompaction.size();
+        }
+        channel.close();
+        Files.move(temp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journalEntries = entries;
+        System.out.println("Compacted read-state journal to " + ids.size() + " entries");
+    }
+
+    private static byte[] encode(byte op, String messageId) {
+        byte[] id = messageId.getBytes(StandardCharsets.UTF_8);
+        byte[] entry = new byte[id.length + 2];
+        entry[0] = op;
+        System.arraycopy(id, 0, entry, 1, id.length);
+        entry[entry.length - 1] = '\n';
+        return entry;
+    }
+
+    private static final class IdSet {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] numeric = newTable(64);
+        private int numericSize;
+        private final Set<String> other = new HashSet<>();
+
+        boolean contains(String id) {
+            long value = numericValue(id);
+            return value != EMPTY ? indexOf(value) >= 0 : other.contains(id);
+        }
+
+        boolean add(String id) {
+            long value = numericValue(id);
+            if (value == EMPTY) {
+                return other.add(id);
+            }
+            if (indexOf(value) >= 0) {
+                return false;
+            }
+            if ((numericSize + 1) * 2 > numeric.length) {
+                resize(numeric.length * 2);
+            }
+            insert(numeric, value);
+            numericSize++;
+            return true;
+        }
+
+        boolean remove(String id) {
+            long value = numericValue(id);
+            if (value == EMPTY) {
+                return other.remove(id);
+            }
+            int index = indexOf(value);
+            if (index < 0) {
+                return false;
+            }
+            numeric[index] = EMPTY;
+            numericSize--;
+            int mask = numeric.length - 1;
+            for (int i = (index + 1) & mask; numeric[i] != EMPTY; i = (i + 1) & mask) {
+                long moved = numeric[i];
+                numeric[i] = EMPTY;
+                insert(numeric, moved);
+            }
+            return true;
+        }
+
+        int size() {
+            return numericSize + other.size();
+        }
+
+        List<String> toList() {
+            List<String> list = new ArrayList<>(size());
+            for (long value : numeric) {
+                if (value != EMPTY) {
+                    list.add(Long.toString(value));
+                }
+            }
+            list.addAll(other);
+            return list;
+        }
+
+        private int indexOf(long value) {
+            int mask = numeric.length - 1;
+            for (int i = slot(value, mask); numeric[i] != EMPTY; i = (i + 1) & mask) {
+                if (numeric[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void resize(int capacity) {
+            long[] table = newTable(capacity);
+            for (long value : numeric) {
+                if (value != EMPTY) {
+                    insert(table, value);
+                }
+            }
+            numeric = table;
+        }
+
+        private static void insert(long[] table, long value) {
+            int mask = table.length - 1;
+            int i = slot(value, mask);
+            while (table[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            table[i] = value;
+        }
+
+        private static int slot(long value, int mask) {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private static long[] newTable(int capacity) {
+            long[] table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+
+        private static long numericValue(String id) {
+            int length = id.length();
+            if (length == 0 || length > 18 || (id.charAt(0) == '0' && length > 1)) {
+                return EMPTY;
+            }
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                char c = id.charAt(i);
+                if (c < '0' || c > '9') {
+                    return EMPTY;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+    }
+}
@@ -6,4 +6,34 @@ public class Config {
     public static final int DEFAULT_UDP_PORT = 5555;
     public static final int SOCKET_TIMEOUT = 30000;
     public static final int MAX_MESSAGE_SIZE = 64 * 1024;
-}
\ No newline at end of file
+    public static final int PIPELINE_DEPTH = 16;
+    public static final int STREAM_CHUNK_SIZE = 4096;
+    public static final int SEND_CHUNK_SIZE = 16 * 1024;
+    public static final int BODY_SPILL_THRESHOLD = Integer.getInteger("maillite.body.spill", MAX_MESSAGE_SIZE);
+    public static final int BODY_PREVIEW_LIMIT = 256 * 1024;
+    public static final String MAILBOX_DIR = System.getProperty("maillite.mailbox.dir", "mailbox");
+    public static final long MAILBOX_SEGMENT_SIZE = 4L * 1024 * 1024;
+    public static final int SYNC_FULL_INTERVAL = 15;
+    public static final boolean PREFETCH_ENABLED = Boolean.parseBoolean(System.getProperty("maillite.prefetch", "true"));
+    public static final long PREFETCH_BUDGET_BYTES = 2L * 1024 * 1024;
+    public static final long PREFETCH_IDLE_DELAY = 400;
+    public static final int PREFETCH_RADIUS = 2;
+    public static final int SEARCH_RESULT_LIMIT = 1000;
+    public static final int SEARCH_DEBOUNCE_DELAY = 200;
+    public static final int INDEX_WORKERS = Integer.getInteger("maillite.index.workers", 2);
+    public static final int INDEX_QUEUE_CAPACITY = 256;
+    public static final long INDEX_QUEUE_BYTES = 4L * 1024 * 1024;
+    public static final int INDEX_BATCH_SIZE = 32;
+    public static final long MESSAGE_CACHE_BYTES = Long.getLong("maillite.cache.bytes", 8L * 1024 * 1024);
+    public static final int POOL_SIZE = Integer.getInteger("maillite.pool.size", 3);
+    public static final long POOL_IDLE_TIMEOUT = 60000;
+    public static final long POOL_VALIDATION_INTERVAL = 15000;
+    public static final int IO_MAX_CONCURRENCY = 8;
+    public static final long ASYNC_TIMEOUT = SOCKET_TIMEOUT + 5000;
+    public static final long HEARTBEAT_INTERVAL = 5000;
+    public static final boolean WARM_STANDBY_ENABLED = Boolean.parseBoolean(System.getProperty("maillite.standby", "true"));
+    public static final boolean EDT_WATCHDOG_ENABLED = Boolean.parseBoolean(System.getProperty("maillite.edt.watchdog", "true"));
+    public static final long EDT_HEARTBEAT_INTERVAL = 100;
+    public static final long EDT_STALL_THRESHOLD = Long.getLong("maillite.edt.stall", 500);
+    public static final boolean USE_NIO_TRANSPORT = Boolean.getBoolean("maillite.nio");
+}
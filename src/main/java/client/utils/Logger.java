@@ -33,7 +33,7 @@ public class Logger {
         log("User session started: " + username);
     }
 
-    public void log(String message) {
+    public synchronized void log(String message) {
         String timestamp = dateFormat.format(new Date());
         String logEntry = String.format("[%s] [%s] %s",
                 timestamp,
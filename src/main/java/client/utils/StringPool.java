@@ -0,0 +1,79 @@
+package client.utils;
+
+public class StringPool {
+    private String[] table;
+    private int size;
+
+    public StringPool() {
+        this(64);
+    }
+
+    public StringPool(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+        table = new String[capacity];
+    }
+
+    public String intern(CharSequence text) {
+        return intern(text, 0, text.length());
+    }
+
+    // Looks the region up without allocating; a String is only created the
+    // first time a distinct value is seen.
+    public synchronized String intern(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+
+        while (table[slot] != null) {
+            String candidate = table[slot];
+            if (regionEquals(candidate, text, start, end)) {
+                return candidate;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String value = text.subSequence(start, end).toString();
+        table[slot] = value;
+        if (++size * 2 > table.length) {
+            rehash();
+        }
+        return value;
+    }
+
+    public synchronized int size() { return size; }
+
+    private void rehash() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String value : old) {
+            if (value != null) {
+                int slot = hash(value, 0, value.length()) & mask;
+                while (table[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+            }
+        }
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean regionEquals(String candidate, CharSequence text, int start, int end) {
+        if (candidate.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < candidate.length(); i++) {
+            if (candidate.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}